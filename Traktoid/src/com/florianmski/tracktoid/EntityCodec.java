@@ -0,0 +1,527 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import com.jakewharton.trakt.entities.Images;
+import com.jakewharton.trakt.entities.Ratings;
+import com.jakewharton.trakt.entities.Shout;
+import com.jakewharton.trakt.entities.TvShow;
+import com.jakewharton.trakt.entities.TvShowEpisode;
+import com.jakewharton.trakt.entities.TvShowSeason;
+import com.jakewharton.trakt.entities.TvShowSeason.Episodes;
+import com.jakewharton.trakt.entities.UserProfile;
+import com.jakewharton.trakt.enumerations.DayOfTheWeek;
+import com.jakewharton.trakt.enumerations.Rating;
+
+/**
+ * Hand-written binary codec for the entities we keep in saved instance states.
+ * Java serialization of the trakt entities is slow and verbose (class descriptors,
+ * boxed fields...), here we only write the fields we actually use, in a fixed order.
+ */
+public class EntityCodec
+{
+	private static final String TAG = "EntityCodec";
+
+	//bump this each time the layout below is changed
+	private static final int VERSION = 2;
+
+	public static void putShows(Bundle b, String key, List<TvShow> shows)
+	{
+		if(shows == null)
+			return;
+
+		try
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			out.writeByte(VERSION);
+			writeShows(out, shows);
+			out.flush();
+			b.putByteArray(key, bos.toByteArray());
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to encode shows", e);
+		}
+	}
+
+	public static ArrayList<TvShow> getShows(Bundle b, String key)
+	{
+		byte[] bytes = b.getByteArray(key);
+		if(bytes == null)
+			return null;
+
+		try
+		{
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if(in.readByte() != VERSION)
+				return null;
+			return readShows(in);
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to decode shows", e);
+			return null;
+		}
+	}
+
+	public static void putEpisodes(Bundle b, String key, List<TvShowEpisode> episodes)
+	{
+		if(episodes == null)
+			return;
+
+		try
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			out.writeByte(VERSION);
+			writeEpisodes(out, episodes);
+			out.flush();
+			b.putByteArray(key, bos.toByteArray());
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to encode episodes", e);
+		}
+	}
+
+	public static ArrayList<TvShowEpisode> getEpisodes(Bundle b, String key)
+	{
+		byte[] bytes = b.getByteArray(key);
+		if(bytes == null)
+			return null;
+
+		try
+		{
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if(in.readByte() != VERSION)
+				return null;
+			return readEpisodes(in);
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to decode episodes", e);
+			return null;
+		}
+	}
+
+	public static void putShouts(Bundle b, String key, List<Shout> shouts)
+	{
+		if(shouts == null)
+			return;
+
+		try
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			out.writeByte(VERSION);
+			writeShouts(out, shouts);
+			out.flush();
+			b.putByteArray(key, bos.toByteArray());
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to encode shouts", e);
+		}
+	}
+
+	public static ArrayList<Shout> getShouts(Bundle b, String key)
+	{
+		byte[] bytes = b.getByteArray(key);
+		if(bytes == null)
+			return null;
+
+		try
+		{
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if(in.readByte() != VERSION)
+				return null;
+			return readShouts(in);
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to decode shouts", e);
+			return null;
+		}
+	}
+
+	/************************** Shows *******************************/
+
+	//same layout as putShows/getShows, for snapshots kept on disk
+	public static void writeShowsSnapshot(DataOutputStream out, List<TvShow> shows) throws IOException
+	{
+		out.writeByte(VERSION);
+		writeShows(out, shows);
+		out.flush();
+	}
+
+	public static ArrayList<TvShow> readShowsSnapshot(DataInputStream in) throws IOException
+	{
+		if(in.readByte() != VERSION)
+			return null;
+		return readShows(in);
+	}
+
+	public static void writeShows(DataOutputStream out, List<TvShow> shows) throws IOException
+	{
+		out.writeInt(shows.size());
+		for(TvShow s : shows)
+			writeShow(out, s);
+	}
+
+	public static ArrayList<TvShow> readShows(DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		ArrayList<TvShow> shows = new ArrayList<TvShow>(size);
+		for(int i = 0; i < size; i++)
+			shows.add(readShow(in));
+		return shows;
+	}
+
+	public static void writeShow(DataOutputStream out, TvShow s) throws IOException
+	{
+		writeString(out, s.title);
+		writeInt(out, s.year);
+		writeString(out, s.url);
+		writeDate(out, s.firstAired);
+		writeString(out, s.country);
+		writeString(out, s.overview);
+		writeInt(out, s.runtime);
+		writeString(out, s.network);
+		writeString(out, s.airDay == null ? null : s.airDay.toString());
+		writeString(out, s.airTime);
+		writeString(out, s.certification);
+		writeString(out, s.imdbId);
+		writeString(out, s.tvdbId);
+		writeString(out, s.tvrageId);
+		writeImages(out, s.images);
+		writeRatings(out, s.ratings);
+		writeString(out, s.rating == null ? null : s.rating.toString());
+		writeBoolean(out, s.inWatchlist);
+		writeInt(out, s.progress);
+
+		if(s.seasons == null)
+			out.writeInt(-1);
+		else
+		{
+			out.writeInt(s.seasons.size());
+			for(TvShowSeason season : s.seasons)
+				writeSeason(out, season);
+		}
+	}
+
+	public static TvShow readShow(DataInputStream in) throws IOException
+	{
+		TvShow s = new TvShow();
+
+		s.title = readString(in);
+		s.year = readInt(in);
+		s.url = readString(in);
+		s.firstAired = readDate(in);
+		s.country = readString(in);
+		s.overview = readString(in);
+		s.runtime = readInt(in);
+		s.network = readString(in);
+		String airDay = readString(in);
+		s.airDay = airDay == null ? null : DayOfTheWeek.fromValue(airDay);
+		s.airTime = readString(in);
+		s.certification = readString(in);
+		s.imdbId = readString(in);
+		s.tvdbId = readString(in);
+		s.tvrageId = readString(in);
+		s.images = readImages(in);
+		s.ratings = readRatings(in);
+		String rating = readString(in);
+		s.rating = rating == null ? null : Rating.fromValue(rating);
+		s.inWatchlist = readBoolean(in);
+		s.progress = readInt(in);
+
+		int nbSeasons = in.readInt();
+		if(nbSeasons >= 0)
+		{
+			s.seasons = new ArrayList<TvShowSeason>(nbSeasons);
+			for(int i = 0; i < nbSeasons; i++)
+				s.seasons.add(readSeason(in));
+		}
+
+		return s;
+	}
+
+	/************************** Seasons *******************************/
+
+	public static void writeSeason(DataOutputStream out, TvShowSeason s) throws IOException
+	{
+		writeInt(out, s.season);
+		writeString(out, s.url);
+		writeInt(out, s.episodesWatched);
+
+		out.writeBoolean(s.episodes != null);
+		if(s.episodes != null)
+		{
+			writeInt(out, s.episodes.count);
+			out.writeBoolean(s.episodes.episodes != null);
+			if(s.episodes.episodes != null)
+				writeEpisodes(out, s.episodes.episodes);
+		}
+	}
+
+	public static TvShowSeason readSeason(DataInputStream in) throws IOException
+	{
+		TvShowSeason s = new TvShowSeason();
+
+		s.season = readInt(in);
+		s.url = readString(in);
+		s.episodesWatched = readInt(in);
+
+		if(in.readBoolean())
+		{
+			s.episodes = new Episodes();
+			s.episodes.count = readInt(in);
+			if(in.readBoolean())
+				s.episodes.episodes = readEpisodes(in);
+		}
+
+		return s;
+	}
+
+	/************************** Episodes *******************************/
+
+	public static void writeEpisodes(DataOutputStream out, List<TvShowEpisode> episodes) throws IOException
+	{
+		out.writeInt(episodes.size());
+		for(TvShowEpisode e : episodes)
+			writeEpisode(out, e);
+	}
+
+	public static ArrayList<TvShowEpisode> readEpisodes(DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		ArrayList<TvShowEpisode> episodes = new ArrayList<TvShowEpisode>(size);
+		for(int i = 0; i < size; i++)
+			episodes.add(readEpisode(in));
+		return episodes;
+	}
+
+	public static void writeEpisode(DataOutputStream out, TvShowEpisode e) throws IOException
+	{
+		writeInt(out, e.season);
+		writeInt(out, e.number);
+		writeString(out, e.title);
+		writeString(out, e.overview);
+		writeString(out, e.url);
+		writeDate(out, e.firstAired);
+		writeImages(out, e.images);
+		writeRatings(out, e.ratings);
+		writeBoolean(out, e.watched);
+	}
+
+	public static TvShowEpisode readEpisode(DataInputStream in) throws IOException
+	{
+		TvShowEpisode e = new TvShowEpisode();
+
+		e.season = readInt(in);
+		e.number = readInt(in);
+		e.title = readString(in);
+		e.overview = readString(in);
+		e.url = readString(in);
+		e.firstAired = readDate(in);
+		e.images = readImages(in);
+		e.ratings = readRatings(in);
+		e.watched = readBoolean(in);
+
+		return e;
+	}
+
+	/************************** Shouts *******************************/
+
+	public static void writeShouts(DataOutputStream out, List<Shout> shouts) throws IOException
+	{
+		out.writeInt(shouts.size());
+		for(Shout s : shouts)
+			writeShout(out, s);
+	}
+
+	public static ArrayList<Shout> readShouts(DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		ArrayList<Shout> shouts = new ArrayList<Shout>(size);
+		for(int i = 0; i < size; i++)
+			shouts.add(readShout(in));
+		return shouts;
+	}
+
+	public static void writeShout(DataOutputStream out, Shout s) throws IOException
+	{
+		writeString(out, s.shout);
+		writeBoolean(out, s.spoiler);
+		writeDate(out, s.inserted == null ? null : s.inserted.getTime());
+
+		out.writeBoolean(s.user != null);
+		if(s.user != null)
+		{
+			writeString(out, s.user.username);
+			writeString(out, s.user.avatar);
+		}
+	}
+
+	public static Shout readShout(DataInputStream in) throws IOException
+	{
+		Shout s = new Shout();
+
+		s.shout = readString(in);
+		s.spoiler = readBoolean(in);
+		Date inserted = readDate(in);
+		if(inserted != null)
+		{
+			s.inserted = Calendar.getInstance();
+			s.inserted.setTime(inserted);
+		}
+
+		if(in.readBoolean())
+		{
+			s.user = new UserProfile();
+			s.user.username = readString(in);
+			s.user.avatar = readString(in);
+		}
+
+		return s;
+	}
+
+	/************************** Helpers *******************************/
+
+	private static void writeImages(DataOutputStream out, Images i) throws IOException
+	{
+		out.writeBoolean(i != null);
+		if(i != null)
+		{
+			writeString(out, i.poster);
+			writeString(out, i.fanart);
+			writeString(out, i.screen);
+		}
+	}
+
+	private static Images readImages(DataInputStream in) throws IOException
+	{
+		if(!in.readBoolean())
+			return null;
+
+		Images i = new Images();
+		i.poster = readString(in);
+		i.fanart = readString(in);
+		i.screen = readString(in);
+		return i;
+	}
+
+	private static void writeRatings(DataOutputStream out, Ratings r) throws IOException
+	{
+		out.writeBoolean(r != null);
+		if(r != null)
+		{
+			writeInt(out, r.percentage);
+			writeInt(out, r.votes);
+			writeInt(out, r.loved);
+			writeInt(out, r.hated);
+		}
+	}
+
+	private static Ratings readRatings(DataInputStream in) throws IOException
+	{
+		if(!in.readBoolean())
+			return null;
+
+		Ratings r = new Ratings();
+		r.percentage = readInt(in);
+		r.votes = readInt(in);
+		r.loved = readInt(in);
+		r.hated = readInt(in);
+		return r;
+	}
+
+	//boxed values are preceded by a presence flag, an unknown year or watchlist state must stay unknown
+	private static void writeInt(DataOutputStream out, Integer value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if(value != null)
+			out.writeInt(value);
+	}
+
+	private static Integer readInt(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? Integer.valueOf(in.readInt()) : null;
+	}
+
+	private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException
+	{
+		//0 = unknown, 1 = false, 2 = true
+		out.writeByte(value == null ? 0 : (value ? 2 : 1));
+	}
+
+	private static Boolean readBoolean(DataInputStream in) throws IOException
+	{
+		byte value = in.readByte();
+		return value == 0 ? null : Boolean.valueOf(value == 2);
+	}
+
+	private static void writeDate(DataOutputStream out, Date date) throws IOException
+	{
+		out.writeBoolean(date != null);
+		if(date != null)
+			out.writeLong(date.getTime());
+	}
+
+	private static Date readDate(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? new Date(in.readLong()) : null;
+	}
+
+	//writeUTF() is limited to 64k, some overviews could be longer than that
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		if(s == null)
+			out.writeInt(-1);
+		else
+		{
+			byte[] bytes = s.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if(length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -26,6 +26,8 @@ import android.os.Environment;
 
 import com.androidquery.callback.BitmapAjaxCallback;
 import com.androidquery.util.AQUtility;
+import com.florianmski.tracktoid.services.TrendingService;
+import com.florianmski.tracktoid.sync.SyncScheduler;
 import com.florianmski.tracktoid.trakt.TraktManager;
 
 @ReportsCrashes(formUri = TraktoidConstants.KEY_BUGSENSE, formKey="") 
@@ -47,6 +49,9 @@ public class TraktoidApplication extends Application
 			AQUtility.setCacheDir(cacheDir);
 		}
 
+		TrendingService.schedule(this);
+		SyncScheduler.schedule(this);
+
 		super.onCreate();
 	}
 
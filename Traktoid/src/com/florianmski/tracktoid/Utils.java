@@ -22,7 +22,6 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -42,7 +41,6 @@ import android.graphics.drawable.AnimationDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.util.Log;
 
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.tasks.post.WatchedEpisodesTask;
@@ -177,24 +175,12 @@ public class Utils
 			TraktManager.getInstance().addToQueue(task.init(false));
 	}
 
-	public static long getPSTTimestamp(long timestamp)
+	//local day as yyyyMMdd, ex: 20120315
+	public static int getDayKey(Date d)
 	{
-		TimeZone tz = TimeZone.getTimeZone("GMT-08:00");
-		int offsetFromUTC = tz.getOffset(timestamp);
-		Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-		c.setTimeInMillis(timestamp);
-		c.add(Calendar.MILLISECOND, offsetFromUTC);
-		Log.e("test", timestamp+"");
-		return c.getTimeInMillis()/1000;
-	}
-
-
-	public static boolean isSameDay(Date d1, Date d2)
-	{
-		if(d1.getTime()/(100*60*60*24) == d2.getTime()/(100*60*60*24))
-			return true;
-
-		return false;
+		Calendar c = Calendar.getInstance();
+		c.setTime(d);
+		return c.get(Calendar.YEAR) * 10000 + (c.get(Calendar.MONTH) + 1) * 100 + c.get(Calendar.DAY_OF_MONTH);
 	}
 
 	public static Bitmap roundBitmap(Bitmap bm)
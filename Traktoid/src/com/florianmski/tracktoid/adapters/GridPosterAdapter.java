@@ -19,9 +19,12 @@ package com.florianmski.tracktoid.adapters;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import android.app.Activity;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
 import android.os.Handler;
@@ -29,6 +32,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.GridView;
 import android.widget.ImageView;
@@ -38,37 +42,60 @@ import android.widget.RelativeLayout;
 import com.androidquery.AQuery;
 import com.androidquery.callback.BitmapAjaxCallback;
 import com.florianmski.tracktoid.R;
+import com.florianmski.tracktoid.db.Library;
 import com.florianmski.tracktoid.image.Image;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.enumerations.Rating;
 
 public class GridPosterAdapter extends BaseAdapter implements AdapterInterface
 {
-	private static final int FILTER_ALL = 0;
-	private static final int FILTER_UNWATCHED = 1;
-	private static final int FILTER_LOVED = 2;
+	private static final int FILTER_ALL = Library.FILTER_ALL;
+	private static final int NB_FILTERS = Library.NB_FILTERS;
 
 	private Activity context;
 	private List<TvShow> shows;
-	private List<TvShow> filterShows = new ArrayList<TvShow>();
+	//one sorted view per filter, all kept in sync on each update so switching filter is free
+	private List<List<TvShow>> filterViews = new ArrayList<List<TvShow>>(NB_FILTERS);
+	private List<TvShow> filterShows;
+	//instance of each show currently in the lists, so we can binary search for it when it's replaced
+	private Map<String, TvShow> showsById = new HashMap<String, TvShow>();
 	private int height;
 	private int currentFilter = 0;
 	private Handler h = new Handler();
+	//poster urls by tvdb id, computing them each time we bind a cell is a waste
+	private Map<String, String> posterUrls = new HashMap<String, String>();
+	private Drawable badgeEmpty;
+	private Drawable badgeLoved;
+	private Drawable badgeHated;
+	private Drawable badgeWatched;
 
 	public GridPosterAdapter(Activity context, List<TvShow> shows, int height) 
 	{
 		this.context = context;
-		this.shows = shows;
-		this.filterShows.addAll(shows);
 		this.height = height;
+
+		badgeEmpty = context.getResources().getDrawable(R.drawable.empty);
+		badgeLoved = context.getResources().getDrawable(R.drawable.badge_loved);
+		badgeHated = context.getResources().getDrawable(R.drawable.badge_hated);
+		badgeWatched = context.getResources().getDrawable(R.drawable.badge_watched);
+
+		for(int i = 0; i < NB_FILTERS; i++)
+			filterViews.add(new ArrayList<TvShow>());
+		filterShows = filterViews.get(FILTER_ALL);
+
+		setShows(shows);
 	}
 
 	@Override
 	public void clear() 
 	{
 		shows.clear();
-		filterShows.clear();
+		for(List<TvShow> view : filterViews)
+			view.clear();
+		showsById.clear();
+		posterUrls.clear();
 		currentFilter = 0;
+		filterShows = filterViews.get(FILTER_ALL);
 		notifyDataSetChanged();
 	}
 
@@ -80,60 +107,170 @@ public class GridPosterAdapter extends BaseAdapter implements AdapterInterface
 
 	public void setFilter(int filter)
 	{
+		if(filter < 0 || filter >= NB_FILTERS)
+			return;
+
 		currentFilter = filter;
-		switch(filter)
+		filterShows = filterViews.get(filter);
+
+		this.notifyDataSetChanged();
+	}
+
+	private boolean matchFilter(TvShow s, int filter)
+	{
+		return Library.matchFilter(s, filter);
+	}
+
+	//full rebuild, only used when we get a whole new list
+	private void setShows(List<TvShow> shows)
+	{
+		this.shows = shows;
+		Collections.sort(shows);
+
+		showsById.clear();
+		for(TvShow s : shows)
+			showsById.put(s.tvdbId, s);
+
+		for(int filter = 0; filter < NB_FILTERS; filter++)
 		{
-		case FILTER_ALL :
-			filterShows.clear();
-			filterShows.addAll(shows);
-			break;
-		case FILTER_UNWATCHED :
-			filterShows.clear();
+			List<TvShow> view = filterViews.get(filter);
+			view.clear();
 			for(TvShow s : shows)
 			{
-				if(s.progress < 100)
-					filterShows.add(s);
+				if(matchFilter(s, filter))
+					view.add(s);
 			}
-			break;
-		case FILTER_LOVED :
-			filterShows.clear();
-			for(TvShow s : shows)
+		}
+	}
+
+	/**
+	 *  Insert or replace a show in the sorted lists (no full sort)
+	 *  If the cell of this show is the only thing that changed in the current filter,
+	 *  only this cell is rebound, otherwise the grid is notified once.
+	 * @param show
+	 * @param grid the grid displaying this adapter, can be null
+	 */
+	public void updateShow(TvShow show, AbsListView grid)
+	{
+		posterUrls.remove(show.tvdbId);
+		TvShow old = showsById.put(show.tvdbId, show);
+		upsert(shows, old, show);
+
+		int changedPosition = -1;
+		boolean structureChanged = false;
+
+		for(int filter = 0; filter < NB_FILTERS; filter++)
+		{
+			List<TvShow> view = filterViews.get(filter);
+			int oldIndex = indexOf(view, old);
+			boolean match = matchFilter(show, filter);
+
+			if(oldIndex >= 0)
+				view.remove(oldIndex);
+
+			int index = -1;
+			if(match)
 			{
-				if(s.rating == Rating.Love)
-					filterShows.add(s);
+				index = getInsertionIndex(view, show);
+				view.add(index, show);
+			}
+
+			if(filter == currentFilter)
+			{
+				//same cell, only its content changed
+				if(oldIndex >= 0 && oldIndex == index)
+					changedPosition = index;
+				else if(oldIndex >= 0 || match)
+					structureChanged = true;
 			}
-			break;
 		}
 
-		this.notifyDataSetChanged();
+		if(structureChanged)
+			notifyDataSetChanged();
+		else if(changedPosition >= 0)
+			refreshView(changedPosition, grid);
 	}
 
-	public void updateShow(TvShow show)
+	public void removeShow(TvShow show)
 	{
-		int index = Collections.binarySearch(shows, show);
-		if(index < 0 || index >= shows.size())
-			shows.add(show);
-		else
-			shows.set(index, show);
+		TvShow old = showsById.remove(show.tvdbId);
+		if(old == null)
+			return;
 
-		Collections.sort(shows);
+		remove(shows, old);
+
+		boolean structureChanged = false;
+		for(int filter = 0; filter < NB_FILTERS; filter++)
+			structureChanged |= remove(filterViews.get(filter), old) && filter == currentFilter;
 
-		setFilter(currentFilter);
+		if(structureChanged)
+			notifyDataSetChanged();
 	}
 
-	public void removeShow(TvShow show)
+	public void updateShows(List<TvShow> shows)
 	{
-		int index = Collections.binarySearch(shows, show);
-		if(index >= 0 && index < shows.size())
-			shows.remove(index);
+		setShows(shows);
+		notifyDataSetChanged();
+	}
 
-		setFilter(currentFilter);
+	//the title of the show may have changed, the old entry is searched with the old instance
+	private static void upsert(List<TvShow> list, TvShow old, TvShow show)
+	{
+		remove(list, old);
+		list.add(getInsertionIndex(list, show), show);
 	}
 
-	public void updateShows(List<TvShow> shows)
+	private static boolean remove(List<TvShow> list, TvShow old)
 	{
-		this.shows = shows;
-		setFilter(currentFilter);
+		int index = indexOf(list, old);
+		if(index < 0)
+			return false;
+
+		list.remove(index);
+		return true;
+	}
+
+	private static int indexOf(List<TvShow> list, TvShow old)
+	{
+		if(old == null)
+			return -1;
+
+		int index = Collections.binarySearch(list, old);
+		if(index < 0)
+			return -1;
+
+		//shows with the same title are equal for the sort, ours is one of them
+		for(int i = index; i >= 0 && list.get(i).compareTo(old) == 0; i--)
+		{
+			if(list.get(i) == old)
+				return i;
+		}
+		for(int i = index + 1; i < list.size() && list.get(i).compareTo(old) == 0; i++)
+		{
+			if(list.get(i) == old)
+				return i;
+		}
+		return -1;
+	}
+
+	private static int getInsertionIndex(List<TvShow> list, TvShow show)
+	{
+		int index = Collections.binarySearch(list, show);
+		return index < 0 ? -index-1 : index;
+	}
+
+	//rebind a single visible cell instead of the whole grid
+	private void refreshView(int position, AbsListView grid)
+	{
+		if(grid == null)
+		{
+			notifyDataSetChanged();
+			return;
+		}
+
+		View v = grid.getChildAt(position - grid.getFirstVisiblePosition());
+		if(v != null)
+			getView(position, v, grid);
 	}
 
 	@Override
@@ -159,6 +296,7 @@ public class GridPosterAdapter extends BaseAdapter implements AdapterInterface
 	{
 		final ViewHolder holder;
 
+		//everything allocated here is allocated once per cell, not once per bind
 		if (convertView == null)
 		{
 			holder = new ViewHolder();
@@ -166,108 +304,162 @@ public class GridPosterAdapter extends BaseAdapter implements AdapterInterface
 			convertView = LayoutInflater.from(context).inflate(R.layout.grid_item_show, null, false);
 
 			holder.rl = (RelativeLayout) convertView.findViewById(R.id.relativeLayoutPoster);
-			//			GridView.LayoutParams paramsRl = new GridView.LayoutParams(LayoutParams.FILL_PARENT, height);
-			//			holder.rl.setLayoutParams(paramsRl);
-			//			holder.rl.setPadding(PADDING, PADDING, PADDING, PADDING);
-
 			holder.ivPoster = (ImageView) convertView.findViewById(R.id.imageViewPoster);
 			holder.ivPoster.setScaleType(ScaleType.CENTER_CROP);
-
 			holder.ivRating = (ImageView) convertView.findViewById(R.id.imageViewRating);
 			holder.ivWatched = (ImageView) convertView.findViewById(R.id.imageViewWatched);
 
-			//			RelativeLayout.LayoutParams paramsIvRating = new RelativeLayout.LayoutParams(height/8, height/8);
-			//			paramsIvRating.addRule(RelativeLayout.ALIGN_RIGHT, holder.ivPoster.getId());
-			//			RelativeLayout.LayoutParams paramsIvWatched = new RelativeLayout.LayoutParams(height/4, height/4);
-			//			paramsIvWatched.addRule(RelativeLayout.ALIGN_RIGHT, holder.ivPoster.getId());
-			//			holder.ivRating.setLayoutParams(paramsIvRating);
-			//			holder.ivWatched.setLayoutParams(paramsIvWatched);
+			holder.aq = new AQuery(convertView);
+			holder.tdLoved = createBadge(badgeLoved);
+			holder.tdHated = createBadge(badgeHated);
+			holder.tdWatched = createBadge(badgeWatched);
 
 			convertView.setTag(holder);
 		} 
 		else
 			holder = (ViewHolder) convertView.getTag();
 
-		GridView.LayoutParams paramsRl = new GridView.LayoutParams(LayoutParams.FILL_PARENT, height);
-		holder.rl.setLayoutParams(paramsRl);
+		//layout params only change with the height (orientation change, new number of columns)
+		if(holder.height != height)
+		{
+			holder.height = height;
+
+			holder.rl.setLayoutParams(new GridView.LayoutParams(LayoutParams.FILL_PARENT, height));
 
-		RelativeLayout.LayoutParams paramsIvRating = new RelativeLayout.LayoutParams(height/8, height/8);
-		paramsIvRating.addRule(RelativeLayout.ALIGN_RIGHT, holder.ivPoster.getId());
-		RelativeLayout.LayoutParams paramsIvWatched = new RelativeLayout.LayoutParams(height/4, height/4);
-		paramsIvWatched.addRule(RelativeLayout.ALIGN_RIGHT, holder.ivPoster.getId());
-		holder.ivRating.setLayoutParams(paramsIvRating);
-		holder.ivWatched.setLayoutParams(paramsIvWatched);
+			RelativeLayout.LayoutParams paramsIvRating = new RelativeLayout.LayoutParams(height/8, height/8);
+			paramsIvRating.addRule(RelativeLayout.ALIGN_RIGHT, holder.ivPoster.getId());
+			RelativeLayout.LayoutParams paramsIvWatched = new RelativeLayout.LayoutParams(height/4, height/4);
+			paramsIvWatched.addRule(RelativeLayout.ALIGN_RIGHT, holder.ivPoster.getId());
+			holder.ivRating.setLayoutParams(paramsIvRating);
+			holder.ivWatched.setLayoutParams(paramsIvWatched);
+		}
 
 		final TvShow show = filterShows.get(position);
 
-		holder.ivRating.setImageBitmap(null);
-		holder.ivWatched.setImageBitmap(null);
-		holder.ivPoster.setImageBitmap(null);
+		bindPoster(holder, getPosterUrl(show), convertView, parent);
+
+		TransitionDrawable rating = null;
+		if(show.rating == Rating.Love)
+			rating = holder.tdLoved;
+		else if(show.rating == Rating.Hate)
+			rating = holder.tdHated;
+
+		TransitionDrawable watched = show.progress == 100 ? holder.tdWatched : null;
+
+		//only animate badges which were not already displayed on this cell
+		if(rating != holder.rating || watched != holder.watched)
+		{
+			holder.rating = rating;
+			holder.watched = watched;
+			holder.ivRating.setImageDrawable(null);
+			holder.ivWatched.setImageDrawable(null);
+			h.removeCallbacks(holder);
+			h.post(holder);
+		}
+
+		return convertView;
+	}
+
+	private void bindPoster(ViewHolder holder, String url, View convertView, ViewGroup parent)
+	{
+		//no poster for this show, don't leave the one of the previous show of this recycled cell
+		if(url == null)
+		{
+			holder.url = null;
+			holder.aq.id(holder.ivPoster).image(R.drawable.empty);
+			return;
+		}
+
+		//this cell is already displaying this poster
+		if(url.equals(holder.url))
+			return;
 
-		Image i = new Image(show.tvdbId, show.images.poster, Image.POSTER);
-		AQuery aq = new AQuery(convertView);
-		//create a bitmap ajax callback object
-		BitmapAjaxCallback cb = new BitmapAjaxCallback();
+		Bitmap poster = holder.aq.getCachedImage(url);
+		if(poster != null)
+		{
+			holder.url = url;
+			holder.ivPoster.setImageBitmap(poster);
+			return;
+		}
+
+		//not bound yet, AQuery will call getView() again when the fling is over
+		holder.url = null;
+		holder.ivPoster.setImageBitmap(null);
 
-		if(aq.shouldDelay(convertView, parent, i.getUrl(), 0))
-			aq.id(holder.ivPoster).image(context.getResources().getDrawable(R.drawable.progress));
+		if(holder.aq.shouldDelay(convertView, parent, url, 0))
+		{
+			if(holder.progress == null)
+				holder.progress = context.getResources().getDrawable(R.drawable.progress);
+			holder.ivPoster.setImageDrawable(holder.progress);
+		}
 		else
 		{
-			File posterImage = aq.getCachedFile(i.getUrl());
+			holder.url = url;
+
+			//from here we have to decode or download the poster anyway
+			File posterImage = holder.aq.getCachedFile(url);
 
 			if(posterImage != null)
-				aq.id(holder.ivPoster).image(posterImage, true, 0, null);
+				holder.aq.id(holder.ivPoster).image(posterImage, true, 0, null);
 			else
 			{
-				cb.url(i.getUrl()).animation(android.R.anim.fade_in).fileCache(true).memCache(true);
-				aq.id(holder.ivPoster).image(cb);
+				BitmapAjaxCallback cb = new BitmapAjaxCallback();
+				cb.url(url).animation(android.R.anim.fade_in).fileCache(true).memCache(true);
+				holder.aq.id(holder.ivPoster).image(cb);
 			}
 		}
+	}
 
-		TransitionDrawable td = null;
-
-		if(show.rating == Rating.Love)
-			td = new TransitionDrawable(new Drawable[]{context.getResources().getDrawable(R.drawable.empty), context.getResources().getDrawable(R.drawable.badge_loved)});
-		else if(show.rating == Rating.Hate)
-			td = new TransitionDrawable(new Drawable[]{context.getResources().getDrawable(R.drawable.empty), context.getResources().getDrawable(R.drawable.badge_hated)});
-
-		h.post(new TDRunnable(holder.ivRating, td));
-
-		if(show.progress == 100)
+	private String getPosterUrl(TvShow show)
+	{
+		String url = posterUrls.get(show.tvdbId);
+		if(url == null && show.images != null)
 		{
-			td = new TransitionDrawable(new Drawable[]{context.getResources().getDrawable(R.drawable.empty), context.getResources().getDrawable(R.drawable.badge_watched)});
-			h.post(new TDRunnable(holder.ivWatched, td));
+			url = new Image(show.tvdbId, show.images.poster, Image.POSTER).getUrl();
+			posterUrls.put(show.tvdbId, url);
 		}
+		return url;
+	}
 
-		return convertView;
+	private TransitionDrawable createBadge(Drawable badge)
+	{
+		//drawables created from the same constant state share their bitmap
+		return new TransitionDrawable(new Drawable[]{badgeEmpty.getConstantState().newDrawable(), badge.getConstantState().newDrawable()});
 	}
 
-	private static class ViewHolder 
+	private static class ViewHolder implements Runnable
 	{
 		private RelativeLayout rl;
 		private ImageView ivPoster;
 		private ImageView ivRating;
 		private ImageView ivWatched;
-	}
 
-	private class TDRunnable implements Runnable
-	{
-		private ImageView iv;
-		private TransitionDrawable td;
+		private AQuery aq;
+		private int height = -1;
+		private String url;
+		private Drawable progress;
 
-		public TDRunnable(ImageView iv, TransitionDrawable td)
-		{
-			this.iv = iv;
-			this.td = td;
-		}
+		private TransitionDrawable tdLoved;
+		private TransitionDrawable tdHated;
+		private TransitionDrawable tdWatched;
+		private TransitionDrawable rating;
+		private TransitionDrawable watched;
 
 		@Override
 		public void run() 
+		{
+			startTransition(ivRating, rating);
+			startTransition(ivWatched, watched);
+		}
+
+		private void startTransition(ImageView iv, TransitionDrawable td)
 		{
 			if(td != null)
+			{
+				td.resetTransition();
 				td.startTransition(2000);
+			}
 			iv.setImageDrawable(td);
 		}
-
 	}
-}
\ No newline at end of file
+}
@@ -17,9 +17,9 @@
 package com.florianmski.tracktoid.adapters.lists;
 
 import java.io.File;
-import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import android.content.Context;
@@ -45,6 +45,7 @@ import com.androidquery.AQuery;
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.TraktoidConstants;
 import com.florianmski.tracktoid.adapters.AdapterInterface;
+import com.florianmski.tracktoid.db.tasks.DBTask;
 import com.florianmski.tracktoid.image.Image;
 import com.florianmski.tracktoid.ui.activities.phone.EpisodeActivity;
 import com.florianmski.tracktoid.widgets.ScrollingTextView;
@@ -52,71 +53,57 @@ import com.jakewharton.trakt.entities.CalendarDate;
 import com.jakewharton.trakt.entities.CalendarDate.CalendarTvShowEpisode;
 import com.jakewharton.trakt.entities.TvShowEpisode;
 
-public class ListCalendarAdapter extends BaseAdapter implements Serializable, AdapterInterface
+public class ListCalendarAdapter extends BaseAdapter implements AdapterInterface
 {
-	private static final long serialVersionUID = 1L;
-	
 	public final static int TYPE_SEPARATOR = 0, TYPE_ROW = 1;
 	public final static int NB_BY_ROW_PORTRAIT = 2;
 	public final static int NB_BY_ROW_LANDSCAPE = 3;
 
 	private List<CalendarDate> calendarDates;
-	private List<Object> objects = new ArrayList<Object>();
+	private RowIndex index;
 	private Context context;
 	private Bitmap placeholder;
-	private static int nbByRow;
+	private int nbByRow;
+	//getView() is only called from the ui thread, one format is enough
+	private SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE dd MMMM yyyy");
 
 	public ListCalendarAdapter(List<CalendarDate> calendarDates, Context context)
 	{
-		this.calendarDates = calendarDates;
+		this.calendarDates = calendarDates == null ? new ArrayList<CalendarDate>() : calendarDates;
 		this.context = context;
 
 		placeholder = BitmapFactory.decodeResource(context.getResources(), R.drawable.empty);
+		nbByRow = getNbByRow(context);
+		index = new RowIndex(this.calendarDates, nbByRow);
+	}
+
+	public static int getNbByRow(Context context)
+	{
 		int orientation = context.getResources().getConfiguration().orientation;
 		if(orientation == Configuration.ORIENTATION_PORTRAIT)
-			nbByRow = NB_BY_ROW_PORTRAIT;
+			return NB_BY_ROW_PORTRAIT;
 		else
-			nbByRow = NB_BY_ROW_LANDSCAPE;
-
-		if(calendarDates != null)
-		{
-			for(CalendarDate cd : calendarDates)
-			{
-				objects.add(cd);
-				for(int i = 0; i < (int) Math.ceil((cd.episodes.size()*1.0)/(nbByRow*1.0)); i++)
-				{
-					List<CalendarTvShowEpisode> temp = new ArrayList<CalendarTvShowEpisode>();
-					for(int j = 0; j < nbByRow; j++)
-					{
-						if(j+(nbByRow*i) < cd.episodes.size())
-							temp.add(cd.episodes.get(j+(nbByRow*i)));
-					}
-					objects.add(temp);
-				}
-			}
-		}
+			return NB_BY_ROW_LANDSCAPE;
 	}
-	
+
 	@Override
 	public void clear() 
 	{
 		calendarDates.clear();
+		index = new RowIndex(calendarDates, nbByRow);
 		notifyDataSetChanged();
 	}
 
 	@Override
 	public int getCount() 
 	{
-		int count = 0;
-		for(CalendarDate cd : calendarDates)
-			count += Math.ceil(cd.episodes.size()/(nbByRow*1.0));
-		return count + calendarDates.size();
+		return index.rows.length;
 	}
 
 	@Override
 	public Object getItem(int position) 
 	{
-		return objects.get(position);
+		return index.rows[position];
 	}
 
 	@Override
@@ -128,10 +115,7 @@ public class ListCalendarAdapter extends BaseAdapter implements Serializable, Ad
 	@Override
 	public int getItemViewType(int position) 
 	{
-		if(objects.get(position) instanceof CalendarDate)
-			return TYPE_SEPARATOR;
-		else
-			return TYPE_ROW;
+		return index.types[position];
 	}
 
 	@Override
@@ -146,9 +130,10 @@ public class ListCalendarAdapter extends BaseAdapter implements Serializable, Ad
 	{
 		final ViewHolder holder;
 		int type = getItemViewType(position);
+
 		if (convertView == null) 
 		{
-			holder = new ViewHolder();
+			holder = new ViewHolder(nbByRow);
 			switch(type)
 			{
 			case TYPE_SEPARATOR :
@@ -212,7 +197,7 @@ public class ListCalendarAdapter extends BaseAdapter implements Serializable, Ad
 		{
 			CalendarDate cd = (CalendarDate) getItem(position);
 
-			holder.tvDay.setText(new SimpleDateFormat("EEEE dd MMMM yyyy").format(cd.date));
+			holder.tvDay.setText(dayFormat.format(cd.date));
 
 			return holder.llSeparator;
 		}
@@ -274,17 +259,32 @@ public class ListCalendarAdapter extends BaseAdapter implements Serializable, Ad
 					@Override
 					public void onClick(View v) 
 					{
-						Intent i = new Intent(context, EpisodeActivity.class);
-						ArrayList<TvShowEpisode> episodes = new ArrayList<TvShowEpisode>();
-						//workaround to display image in the episode view
-						
 						if(episode.images.screen != null)
+						{
+							//workaround to display image in the episode view
 							episode.images.screen = episode.images.screen.replace("-940","");
-						
-						episodes.add(episode);
-						i.putExtra(TraktoidConstants.BUNDLE_RESULTS, episodes);
-						i.putExtra(TraktoidConstants.BUNDLE_TVDB_ID, e.show.tvdbId);
-						context.startActivity(i);
+							showEpisode(episode, e.show.tvdbId);
+						}
+						//offline calendar only has what it displays, get the whole episode
+						else
+						{
+							new DBTask(context, null)
+							{
+								private TvShowEpisode fullEpisode;
+
+								@Override
+								protected void doDBStuff()
+								{
+									fullEpisode = dbw.getEpisode(episode.url);
+								}
+
+								@Override
+								protected void onPostExecute(Boolean success)
+								{
+									showEpisode(fullEpisode != null ? fullEpisode : episode, e.show.tvdbId);
+								}
+							}.launch();
+						}
 					}
 				});
 			}
@@ -296,6 +296,50 @@ public class ListCalendarAdapter extends BaseAdapter implements Serializable, Ad
 
 	}
 
+	private void showEpisode(TvShowEpisode episode, String tvdbId)
+	{
+		Intent i = new Intent(context, EpisodeActivity.class);
+		ArrayList<TvShowEpisode> episodes = new ArrayList<TvShowEpisode>();
+		episodes.add(episode);
+		i.putExtra(TraktoidConstants.BUNDLE_RESULTS, episodes);
+		i.putExtra(TraktoidConstants.BUNDLE_TVDB_ID, tvdbId);
+		context.startActivity(i);
+	}
+
+	/**
+	 * Immutable flattened view of the calendar: one separator row per date followed by
+	 * its episodes cut in rows of nbByRow. Built once by adapter (new data or a rotation means a new adapter)
+	 * so getCount(), getItem() and getItemViewType() are simple array lookups.
+	 */
+	private static final class RowIndex
+	{
+		private final Object[] rows;
+		private final int[] types;
+
+		private RowIndex(List<CalendarDate> calendarDates, int nbByRow)
+		{
+			int count = 0;
+			for(CalendarDate cd : calendarDates)
+				count += 1 + (cd.episodes.size() + nbByRow - 1) / nbByRow;
+
+			rows = new Object[count];
+			types = new int[count];
+
+			int position = 0;
+			for(CalendarDate cd : calendarDates)
+			{
+				rows[position] = cd;
+				types[position++] = TYPE_SEPARATOR;
+
+				for(int start = 0; start < cd.episodes.size(); start += nbByRow)
+				{
+					rows[position] = Collections.unmodifiableList(cd.episodes.subList(start, Math.min(start + nbByRow, cd.episodes.size())));
+					types[position++] = TYPE_ROW;
+				}
+			}
+		}
+	}
+
 	private static class ViewHolder 
 	{
 		private LinearLayout llEpisodes;
@@ -303,11 +347,21 @@ public class ListCalendarAdapter extends BaseAdapter implements Serializable, Ad
 		private LinearLayout llSeparator;
 		private TextView tvDay;
 
-		private ScrollingTextView[] tvShow = new ScrollingTextView[nbByRow];
-		private ScrollingTextView[] tvTitle = new ScrollingTextView[nbByRow];
-		private ScrollingTextView[] tvAirTime = new ScrollingTextView[nbByRow];
-		private ImageView[] livScreen = new ImageView[nbByRow];
-		private RelativeLayout[] rlScreen = new RelativeLayout[nbByRow];
-		private LinearLayout[] llScreen = new LinearLayout[nbByRow];
+		private ScrollingTextView[] tvShow;
+		private ScrollingTextView[] tvTitle;
+		private ScrollingTextView[] tvAirTime;
+		private ImageView[] livScreen;
+		private RelativeLayout[] rlScreen;
+		private LinearLayout[] llScreen;
+
+		private ViewHolder(int nbByRow)
+		{
+			tvShow = new ScrollingTextView[nbByRow];
+			tvTitle = new ScrollingTextView[nbByRow];
+			tvAirTime = new ScrollingTextView[nbByRow];
+			livScreen = new ImageView[nbByRow];
+			rlScreen = new RelativeLayout[nbByRow];
+			llScreen = new LinearLayout[nbByRow];
+		}
 	}
 }
@@ -16,7 +16,6 @@
 
 package com.florianmski.tracktoid.adapters.lists;
 
-import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,10 +41,8 @@ import com.florianmski.tracktoid.adapters.AdapterInterface;
 import com.florianmski.tracktoid.image.Image;
 import com.jakewharton.trakt.entities.TvShowEpisode;
 
-public class ListEpisodeAdapter extends BaseAdapter implements Serializable, AdapterInterface
+public class ListEpisodeAdapter extends BaseAdapter implements AdapterInterface
 {	
-	private static final long serialVersionUID = 3085212680669200372L;
-	
 	private List<TvShowEpisode> episodes;
 	private Context context;
 	private boolean watchedMode = false;
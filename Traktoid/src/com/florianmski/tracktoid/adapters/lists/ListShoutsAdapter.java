@@ -53,6 +53,13 @@ public class ListShoutsAdapter extends BaseAdapter implements AdapterInterface
 		this.notifyDataSetChanged();
 	}
 
+	//append a page of older shouts
+	public void addShouts(List<Shout> shouts)
+	{
+		this.shouts.addAll(shouts);
+		this.notifyDataSetChanged();
+	}
+
 	public void revealSpoiler(int position)
 	{
 		if(position < getCount() && shouts.get(position).spoiler)
@@ -120,7 +127,10 @@ public class ListShoutsAdapter extends BaseAdapter implements AdapterInterface
 
 		}.url(s.user.avatar).animation(android.R.anim.fade_in).fileCache(false).memCache(true);
 
-		if(aq.shouldDelay(convertView, parent, s.user.avatar, 0))
+		//shouts we just posted don't have an avatar yet
+		if(s.user.avatar == null)
+			aq.id(holder.ivAvatar).image(placeholder);
+		else if(aq.shouldDelay(convertView, parent, s.user.avatar, 0))
 			aq.id(holder.ivAvatar).image(placeholder);
 		else
 			aq.id(holder.ivAvatar).image(cb);
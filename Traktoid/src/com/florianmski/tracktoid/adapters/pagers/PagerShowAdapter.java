@@ -24,7 +24,7 @@ import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentStatePagerAdapter;
 
 import com.florianmski.tracktoid.adapters.AdapterInterface;
-import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.Library;
 import com.florianmski.tracktoid.ui.fragments.pagers.items.ShowFragment;
 import com.jakewharton.trakt.entities.TvShow;
 
@@ -36,19 +36,16 @@ public class PagerShowAdapter extends FragmentStatePagerAdapter implements Adapt
 	{
 		super(fm);
 
-		DatabaseWrapper dbw = new DatabaseWrapper(context);
-		dbw.open();
+		Library library = Library.get(context);
 
 		//if a show on this list is in the db, get infos so we can display them (watched, loved...)
 		for(int i = 0; i < shows.size(); i++)
 		{
-			TvShow s = shows.get(i);
-			if(dbw.showExist(s.tvdbId))
-				shows.set(i, dbw.getShow(s.tvdbId));
+			TvShow s = library.getShow(shows.get(i).tvdbId);
+			if(s != null)
+				shows.set(i, s);
 		}
 
-		dbw.close();
-
 		this.shows = shows;		
 	}
 
@@ -16,12 +16,15 @@
 
 package com.florianmski.tracktoid.db;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
-import android.app.ProgressDialog;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -34,10 +37,12 @@ import com.jakewharton.trakt.entities.CalendarDate;
 import com.jakewharton.trakt.entities.CalendarDate.CalendarTvShowEpisode;
 import com.jakewharton.trakt.entities.Images;
 import com.jakewharton.trakt.entities.Ratings;
+import com.jakewharton.trakt.entities.Shout;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.entities.TvShowEpisode;
 import com.jakewharton.trakt.entities.TvShowSeason;
 import com.jakewharton.trakt.entities.TvShowSeason.Episodes;
+import com.jakewharton.trakt.entities.UserProfile;
 import com.jakewharton.trakt.enumerations.DayOfTheWeek;
 import com.jakewharton.trakt.enumerations.Rating;
 
@@ -48,7 +53,7 @@ public class DatabaseWrapper
 	// Begin constants:
 
 	private static final String DATABASE_NAME = "tvshows.db";
-	private static final int DATABASE_VERSION = 2;
+	private static final int DATABASE_VERSION = 10;
 
 	public static final String KEY_ID = "_id";
 	public static final int COLUMN_KEY_ID = 0;
@@ -65,6 +70,7 @@ public class DatabaseWrapper
 	public static final String KEY_TVSHOW_URL = "url";
 	public static final int COLUMN_TVSHOW_URL = 3;
 
+	//in ms, null if unknown
 	public static final String KEY_TVSHOW_FIRST_AIRED = "first_aired";
 	public static final int COLUMN_TVSHOW_FIRST_AIRED = 4;
 
@@ -80,6 +86,7 @@ public class DatabaseWrapper
 	public static final String KEY_TVSHOW_NETWORK = "network";
 	public static final int COLUMN_TVSHOW_NETWORK = 8;
 
+	//see AIR_DAY_CODES
 	public static final String KEY_TVSHOW_AIR_DAY = "air_day";
 	public static final int COLUMN_TVSHOW_AIR_DAY = 9;
 
@@ -116,9 +123,24 @@ public class DatabaseWrapper
 	public static final String KEY_TVSHOW_HATED = "hated";
 	public static final int COLUMN_TVSHOW_HATED = 20;
 
+	//see RATING_CODES
 	public static final String KEY_TVSHOW_RATING = "rating";
 	public static final int COLUMN_TVSHOW_RATING = 21;
 
+	//codes stored in the db, never change or reuse one
+	private static final EnumCodes<DayOfTheWeek> AIR_DAY_CODES = new EnumCodes<DayOfTheWeek>(DayOfTheWeek.class)
+			.put(1, DayOfTheWeek.Sunday)
+			.put(2, DayOfTheWeek.Monday)
+			.put(3, DayOfTheWeek.Tuesday)
+			.put(4, DayOfTheWeek.Wednesday)
+			.put(5, DayOfTheWeek.Thursday)
+			.put(6, DayOfTheWeek.Friday)
+			.put(7, DayOfTheWeek.Saturday);
+	private static final EnumCodes<Rating> RATING_CODES = new EnumCodes<Rating>(Rating.class)
+			.put(1, Rating.Love)
+			.put(2, Rating.Hate)
+			.put(3, Rating.Unrate);
+
 	public static final String KEY_TVSHOW_IN_WATCHLIST = "in_watchlist";
 	public static final int COLUMN_TVSHOW_IN_WATCHLIST = 22;
 
@@ -131,6 +153,10 @@ public class DatabaseWrapper
 	public static final String KEY_TVSHOW_PROGRESS = "progress";
 	public static final int COLUMN_TVSHOW_PROGRESS = 25;
 
+	//last time the whole show was downloaded from trakt
+	public static final String KEY_TVSHOW_LAST_REFRESH = "last_refresh";
+	public static final int COLUMN_TVSHOW_LAST_REFRESH = 26;
+
 	private final static String SELECT_TVSHOW = 
 			KEY_ID + "," +
 					KEY_TVSHOW_TITLE + "," +
@@ -157,7 +183,8 @@ public class DatabaseWrapper
 					KEY_TVSHOW_IN_WATCHLIST + "," +
 					KEY_TVSHOW_EPISODES_WATCHED + "," +
 					KEY_TVSHOW_EPISODES + "," +
-					KEY_TVSHOW_PROGRESS;
+					KEY_TVSHOW_PROGRESS + "," +
+					KEY_TVSHOW_LAST_REFRESH;
 
 	private static final String TVSHOWS_TABLE_CREATE = "create table " +
 			TVSHOWS_TABLE + " (" + 
@@ -170,7 +197,7 @@ public class DatabaseWrapper
 			KEY_TVSHOW_OVERVIEW + " text, " +
 			KEY_TVSHOW_RUNTIME + " integer, " +
 			KEY_TVSHOW_NETWORK + " text, " +
-			KEY_TVSHOW_AIR_DAY + " text," +
+			KEY_TVSHOW_AIR_DAY + " integer, " +
 			KEY_TVSHOW_AIR_TIME + " text, " +
 			KEY_TVSHOW_CERTIFICATION + " text, " +
 			KEY_TVSHOW_IMDB_ID + " text, " +
@@ -182,14 +209,19 @@ public class DatabaseWrapper
 			KEY_TVSHOW_VOTES + " integer, " +
 			KEY_TVSHOW_LOVED + " integer, " +
 			KEY_TVSHOW_HATED + " integer, " +
-			KEY_TVSHOW_RATING + " text, " +
+			KEY_TVSHOW_RATING + " integer, " +
 			KEY_TVSHOW_IN_WATCHLIST + " boolean default 0, " + 
 			KEY_TVSHOW_EPISODES_WATCHED + " integer default 0, " + 
 			KEY_TVSHOW_EPISODES + " integer default 0, " + 
-			KEY_TVSHOW_PROGRESS + " integer default 0 " + // No comma in the end!
+			KEY_TVSHOW_PROGRESS + " integer default 0, " + 
+			KEY_TVSHOW_LAST_REFRESH + " integer default 0 " + // No comma in the end!
 			");";
 
 
+	private static final String TVSHOWS_FIRST_AIRED_INDEX_CREATE = 
+			"CREATE INDEX tvshows_first_aired_index ON " + TVSHOWS_TABLE + " (" + KEY_TVSHOW_FIRST_AIRED + ");";
+
+
 	/************************** Seasons table *******************************/
 	private static final String SEASONS_TABLE = "seasons";
 
@@ -208,13 +240,18 @@ public class DatabaseWrapper
 	public static final String KEY_SEASON_TVSHOW_ID = "tvshow_id";
 	public static final int COLUMN_SEASON_TVSHOW_ID = 5;
 
+	//watched episodes by number, see WatchedBitmap
+	public static final String KEY_SEASON_WATCHED_BITMAP = "watched_bitmap";
+	public static final int COLUMN_SEASON_WATCHED_BITMAP = 6;
+
 	private final static String SELECT_SEASON =
 			KEY_ID + "," +
 					KEY_SEASON_SEASON + "," +
 					KEY_SEASON_EPISODES + "," +
 					KEY_SEASON_EPISODES_WATCHED + "," +
 					KEY_SEASON_URL + "," +
-					KEY_SEASON_TVSHOW_ID;
+					KEY_SEASON_TVSHOW_ID + "," +
+					KEY_SEASON_WATCHED_BITMAP;
 
 	private static final String SEASONS_TABLE_CREATE = "create table " +
 			SEASONS_TABLE + " (" + 
@@ -223,7 +260,8 @@ public class DatabaseWrapper
 			KEY_SEASON_EPISODES + " integer, " +
 			KEY_SEASON_EPISODES_WATCHED + " integer default 0, " +
 			KEY_SEASON_URL + " text, " + 
-			KEY_SEASON_TVSHOW_ID + " integer REFERENCES " + TVSHOWS_TABLE + " (" + KEY_TVSHOW_TVDB_ID + ") " + // No comma in the end!
+			KEY_SEASON_TVSHOW_ID + " integer REFERENCES " + TVSHOWS_TABLE + " (" + KEY_TVSHOW_TVDB_ID + "), " +
+			KEY_SEASON_WATCHED_BITMAP + " blob" + // No comma in the end!
 			");";
 
 
@@ -269,6 +307,14 @@ public class DatabaseWrapper
 	public static final String KEY_EPISODE_SEASON_ID = "season_id";
 	public static final int COLUMN_EPISODE_SEASON_ID = 13;
 
+	//when the watched value was decided (by the user or by trakt), in trakt time (see TraktClock), the most recent decision wins
+	public static final String KEY_EPISODE_WATCHED_MODIFIED = "watched_modified";
+	public static final int COLUMN_EPISODE_WATCHED_MODIFIED = 14;
+
+	//local day of first_aired (yyyyMMdd), used to group the calendar
+	public static final String KEY_EPISODE_DAY_KEY = "day_key";
+	public static final int COLUMN_EPISODE_DAY_KEY = 15;
+
 	private final static String SELECT_EPISODE = 
 			EPISODES_TABLE+"."+KEY_ID + "," +
 					EPISODES_TABLE+"."+KEY_SEASON_SEASON + "," +
@@ -285,6 +331,32 @@ public class DatabaseWrapper
 					KEY_EPISODE_WATCHED + "," +
 					KEY_EPISODE_SEASON_ID;
 
+	//only what the calendar binds (and the url to open the whole episode), qualified since tvshows has some of these names too
+	private final static String SELECT_CALENDAR = 
+			EPISODES_TABLE+"."+KEY_EPISODE_SEASON + "," +
+					EPISODES_TABLE+"."+KEY_EPISODE_EPISODE + "," +
+					EPISODES_TABLE+"."+KEY_EPISODE_TITLE + "," +
+					EPISODES_TABLE+"."+KEY_EPISODE_FIRST_AIRED + "," +
+					EPISODES_TABLE+"."+KEY_EPISODE_URL + "," +
+					EPISODES_TABLE+"."+KEY_EPISODE_DAY_KEY + "," +
+					TVSHOWS_TABLE+"."+KEY_TVSHOW_TITLE + "," +
+					TVSHOWS_TABLE+"."+KEY_TVSHOW_TVDB_ID + "," +
+					TVSHOWS_TABLE+"."+KEY_TVSHOW_NETWORK + "," +
+					TVSHOWS_TABLE+"."+KEY_TVSHOW_AIR_TIME + "," +
+					TVSHOWS_TABLE+"."+KEY_TVSHOW_POSTER;
+
+	private final static int COLUMN_CALENDAR_SEASON = 0;
+	private final static int COLUMN_CALENDAR_EPISODE = 1;
+	private final static int COLUMN_CALENDAR_TITLE = 2;
+	private final static int COLUMN_CALENDAR_FIRST_AIRED = 3;
+	private final static int COLUMN_CALENDAR_URL = 4;
+	private final static int COLUMN_CALENDAR_DAY_KEY = 5;
+	private final static int COLUMN_CALENDAR_SHOW_TITLE = 6;
+	private final static int COLUMN_CALENDAR_TVDB_ID = 7;
+	private final static int COLUMN_CALENDAR_NETWORK = 8;
+	private final static int COLUMN_CALENDAR_AIR_TIME = 9;
+	private final static int COLUMN_CALENDAR_POSTER = 10;
+
 	private static final String EPISODES_TABLE_CREATE = "create table " +
 			EPISODES_TABLE + " (" + 
 			KEY_ID + " integer primary key, " + 
@@ -300,10 +372,99 @@ public class DatabaseWrapper
 			KEY_EPISODE_LOVED + " integer, " +
 			KEY_EPISODE_HATED + " integer, " +
 			KEY_EPISODE_WATCHED + " boolean default 0, " +
-			KEY_EPISODE_SEASON_ID + "  REFERENCES " + SEASONS_TABLE + " (" + KEY_SEASON_URL + ")" +	// No comma in the end!
+			KEY_EPISODE_SEASON_ID + "  REFERENCES " + SEASONS_TABLE + " (" + KEY_SEASON_URL + "), " +
+			KEY_EPISODE_WATCHED_MODIFIED + " integer default 0, " +
+			KEY_EPISODE_DAY_KEY + " integer default 0" +	// No comma in the end!
 			");";
 
+	//seasons of a show and episodes of a season are always read together and in order
+	private static final String SEASONS_INDEX_CREATE = 
+			"CREATE INDEX seasons_tvshow_index ON " + SEASONS_TABLE + " (" + KEY_SEASON_TVSHOW_ID + "," + KEY_SEASON_SEASON + ");";
+
+	private static final String EPISODES_INDEX_CREATE = 
+			"CREATE INDEX episodes_season_index ON " + EPISODES_TABLE + " (" + KEY_EPISODE_SEASON_ID + "," + KEY_EPISODE_EPISODE + ");";
+
+	private static final String EPISODES_FIRST_AIRED_INDEX_CREATE = 
+			"CREATE INDEX episodes_first_aired_index ON " + EPISODES_TABLE + " (" + KEY_EPISODE_FIRST_AIRED + ");";
+
+	//episodes columns (same order as the table) followed by the season ones, see getSeasonsWithEpisodes()
+	private final static String SELECT_SEASON_WITH_EPISODES = 
+			SELECT_EPISODE + "," +
+					SEASONS_TABLE+"."+KEY_SEASON_SEASON + "," +
+					SEASONS_TABLE+"."+KEY_SEASON_EPISODES + "," +
+					SEASONS_TABLE+"."+KEY_SEASON_EPISODES_WATCHED + "," +
+					SEASONS_TABLE+"."+KEY_SEASON_URL;
+
+	private static final int COLUMN_JOIN_SEASON_SEASON = COLUMN_EPISODE_SEASON_ID + 1;
+	private static final int COLUMN_JOIN_SEASON_EPISODES = COLUMN_EPISODE_SEASON_ID + 2;
+	private static final int COLUMN_JOIN_SEASON_EPISODES_WATCHED = COLUMN_EPISODE_SEASON_ID + 3;
+	private static final int COLUMN_JOIN_SEASON_URL = COLUMN_EPISODE_SEASON_ID + 4;
+
+
+
+	/************************** Search table *******************************/
+	//full text index over the library, one row by show (docid = tvdb id)
+	private static final String SEARCH_TABLE = "search_index";
+
+	public static final String KEY_SEARCH_TITLE = "title";
+	public static final String KEY_SEARCH_OVERVIEW = "overview";
+	public static final String KEY_SEARCH_NETWORK = "network";
+	public static final String KEY_SEARCH_EPISODES = "episodes";
+
+	private static final String SEARCH_TABLE_CREATE = "CREATE VIRTUAL TABLE " +
+			SEARCH_TABLE + " USING fts3(" + 
+			KEY_SEARCH_TITLE + ", " +
+			KEY_SEARCH_OVERVIEW + ", " +
+			KEY_SEARCH_NETWORK + ", " +
+			KEY_SEARCH_EPISODES + // No comma in the end!
+			");";
+
+	//(re)build the index row of one or all shows from the tvshows and episodes tables
+	private static final String SEARCH_TABLE_FILL = 
+			"INSERT INTO " + SEARCH_TABLE + " (docid," + KEY_SEARCH_TITLE + "," + KEY_SEARCH_OVERVIEW + "," + KEY_SEARCH_NETWORK + "," + KEY_SEARCH_EPISODES + ") " +
+					"SELECT " + KEY_TVSHOW_TVDB_ID + "," + KEY_TVSHOW_TITLE + "," + KEY_TVSHOW_OVERVIEW + "," + KEY_TVSHOW_NETWORK + "," +
+					"(SELECT group_concat(" + EPISODES_TABLE+"."+KEY_EPISODE_TITLE + ", ' ') " +
+					"FROM " + EPISODES_TABLE + "," + SEASONS_TABLE + " " +
+					"WHERE " + KEY_EPISODE_SEASON_ID + "=" + SEASONS_TABLE+"."+KEY_SEASON_URL + " " +
+					"AND " + KEY_SEASON_TVSHOW_ID + "=" + TVSHOWS_TABLE+"."+KEY_TVSHOW_TVDB_ID + ") " +
+					"FROM " + TVSHOWS_TABLE;
+
+	/************************** Shouts table *******************************/
+	//local copy of the shouts of a show or an episode, so we can page through them
+	private static final String SHOUTS_TABLE = "shouts";
+
+	//"tvdb_id" for a show, "tvdb_id/season/episode" for an episode
+	public static final String KEY_SHOUT_TARGET = "target";
+	public static final int COLUMN_SHOUT_TARGET = 1;
+
+	public static final String KEY_SHOUT_USERNAME = "username";
+	public static final int COLUMN_SHOUT_USERNAME = 2;
 
+	public static final String KEY_SHOUT_AVATAR = "avatar";
+	public static final int COLUMN_SHOUT_AVATAR = 3;
+
+	public static final String KEY_SHOUT_INSERTED = "inserted";
+	public static final int COLUMN_SHOUT_INSERTED = 4;
+
+	public static final String KEY_SHOUT_SHOUT = "shout";
+	public static final int COLUMN_SHOUT_SHOUT = 5;
+
+	public static final String KEY_SHOUT_SPOILER = "spoiler";
+	public static final int COLUMN_SHOUT_SPOILER = 6;
+
+	private static final String SHOUTS_TABLE_CREATE = "create table " +
+			SHOUTS_TABLE + " (" + 
+			KEY_ID + " integer primary key, " + 
+			KEY_SHOUT_TARGET + " text not null, " +
+			KEY_SHOUT_USERNAME + " text, " +
+			KEY_SHOUT_AVATAR + " text, " +
+			KEY_SHOUT_INSERTED + " integer, " +
+			KEY_SHOUT_SHOUT + " text, " +
+			KEY_SHOUT_SPOILER + " boolean default 0" + // No comma in the end!
+			");";
+
+	private static final String SHOUTS_INDEX_CREATE = 
+			"CREATE INDEX shouts_target_index ON " + SHOUTS_TABLE + " (" + KEY_SHOUT_TARGET + "," + KEY_SHOUT_INSERTED + ");";
 
 	/******************************* Triggers ***********************************/
 
@@ -391,12 +552,12 @@ public class DatabaseWrapper
 	 */
 	private static class DataBaseOpener extends SQLiteOpenHelper
 	{
-		private Context context;
+		//v1 to v2 needs to recompute percentages, which can only be done once the db is opened
+		private boolean refreshPercentages = false;
 
 		public DataBaseOpener(Context context, String name, CursorFactory factory, int version) 
 		{
 			super(context, name, factory, version); 
-			this.context = context;
 		}
 		@Override
 		public void onCreate(SQLiteDatabase db) 
@@ -412,25 +573,41 @@ public class DatabaseWrapper
 			db.execSQL(EPISODES_WATCHED_UPDATE_TRIGGER_CREATE);
 			db.execSQL(EPISODES_UPDATE_TRIGGER_CREATE);
 			db.execSQL(EPISODES_INSERT_TRIGGER_CREATE);
+
+			db.execSQL(SEARCH_TABLE_CREATE);
+
+			db.execSQL(SHOUTS_TABLE_CREATE);
+			db.execSQL(SHOUTS_INDEX_CREATE);
+
+			db.execSQL(SEASONS_INDEX_CREATE);
+			db.execSQL(EPISODES_INDEX_CREATE);
+			db.execSQL(EPISODES_FIRST_AIRED_INDEX_CREATE);
+			db.execSQL(TVSHOWS_FIRST_AIRED_INDEX_CREATE);
 		}
 
 		@Override
-		public void onUpgrade(final SQLiteDatabase db, int oldVersion, final int newVersion) 
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) 
 		{
-			final ProgressDialog pd;
-			pd = ProgressDialog.show(context, "", "Upgrading database from v" + oldVersion + " to v" + newVersion + "\nPlease wait...");
-
-			new Thread()
-			{
-				@Override
-				public void run()
-				{
-					if(newVersion <= 2)
-						upgradeFromV1ToV2(db);		
-
-					pd.dismiss();
-				}
-			}.start();
+			//upgrades are chained and done right away, the schema must be up to date
+			//before anybody queries the database
+			if(oldVersion < 2)
+				upgradeFromV1ToV2(db);
+			if(oldVersion < 3)
+				upgradeFromV2ToV3(db);
+			if(oldVersion < 4)
+				upgradeFromV3ToV4(db);
+			if(oldVersion < 5)
+				upgradeFromV4ToV5(db);
+			if(oldVersion < 6)
+				upgradeFromV5ToV6(db);
+			if(oldVersion < 7)
+				upgradeFromV6ToV7(db);
+			if(oldVersion < 8)
+				upgradeFromV7ToV8(db);
+			if(oldVersion < 9)
+				upgradeFromV8ToV9(db);
+			if(oldVersion < 10)
+				upgradeFromV9ToV10(db);
 		}
 
 		private void upgradeFromV1ToV2(SQLiteDatabase db)
@@ -473,13 +650,124 @@ public class DatabaseWrapper
 			db.execSQL(EPISODES_UPDATE_TRIGGER_CREATE);
 			db.execSQL(EPISODES_INSERT_TRIGGER_CREATE);
 
-			DatabaseWrapper dbw = new DatabaseWrapper(context);
-			dbw.open();
+			refreshPercentages = true;
+		}
 
-			for(TvShow s : dbw.getShows())
-				dbw.refreshPercentage(s.tvdbId);
+		private void upgradeFromV2ToV3(SQLiteDatabase db)
+		{
+			db.execSQL(SEARCH_TABLE_CREATE);
+			db.execSQL(SEARCH_TABLE_FILL + ";");
+		}
+
+		private void upgradeFromV3ToV4(SQLiteDatabase db)
+		{
+			db.execSQL(SHOUTS_TABLE_CREATE);
+			db.execSQL(SHOUTS_INDEX_CREATE);
+		}
+
+		private void upgradeFromV4ToV5(SQLiteDatabase db)
+		{
+			//existing shows are considered never refreshed, the sync will take care of them
+			db.execSQL(
+					"ALTER TABLE " + TVSHOWS_TABLE + " " +
+							"ADD COLUMN " + KEY_TVSHOW_LAST_REFRESH + " integer default 0;");
+		}
+
+		private void upgradeFromV5ToV6(SQLiteDatabase db)
+		{
+			//existing values are older than anything to come
+			db.execSQL(
+					"ALTER TABLE " + EPISODES_TABLE + " " +
+							"ADD COLUMN " + KEY_EPISODE_WATCHED_MODIFIED + " integer default 0;");
+		}
+
+		private void upgradeFromV6ToV7(SQLiteDatabase db)
+		{
+			db.execSQL(SEASONS_INDEX_CREATE);
+			db.execSQL(EPISODES_INDEX_CREATE);
+		}
+
+		private void upgradeFromV7ToV8(SQLiteDatabase db)
+		{
+			db.execSQL(
+					"ALTER TABLE " + EPISODES_TABLE + " " +
+							"ADD COLUMN " + KEY_EPISODE_DAY_KEY + " integer default 0;");
+			//same value as Utils.getDayKey()
+			db.execSQL(
+					"UPDATE " + EPISODES_TABLE + " " +
+							"SET " + KEY_EPISODE_DAY_KEY + "=CAST(strftime('%Y%m%d', " + KEY_EPISODE_FIRST_AIRED + "/1000, 'unixepoch', 'localtime') AS integer);");
+			db.execSQL(EPISODES_FIRST_AIRED_INDEX_CREATE);
+		}
+
+		private void upgradeFromV8ToV9(SQLiteDatabase db)
+		{
+			//sqlite can't change the type of a column, rebuild the table
+			//triggers using the tvshows table are recreated once it's done
+			db.execSQL("DROP TRIGGER " + EPISODES_WATCHED_UPDATE_TRIGGER + ";");
+			db.execSQL("DROP TRIGGER " + EPISODES_INSERT_TRIGGER + ";");
+			db.execSQL("DROP TRIGGER " + EPISODES_UPDATE_TRIGGER + ";");
+
+			db.execSQL("ALTER TABLE " + TVSHOWS_TABLE + " RENAME TO " + TVSHOWS_TABLE + "_old;");
+			db.execSQL(TVSHOWS_TABLE_CREATE);
+			db.execSQL(
+					"INSERT INTO " + TVSHOWS_TABLE + " (" + SELECT_TVSHOW + ") " +
+							"SELECT " + SELECT_TVSHOW + " FROM " + TVSHOWS_TABLE + "_old;");
+			db.execSQL("DROP TABLE " + TVSHOWS_TABLE + "_old;");
+
+			//values were copied as text, convert them
+			//first_aired was stored with Date.toString()
+			SimpleDateFormat dateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+			Cursor c = db.rawQuery(
+					"SELECT " + KEY_ID + "," + KEY_TVSHOW_FIRST_AIRED + "," + KEY_TVSHOW_AIR_DAY + "," + KEY_TVSHOW_RATING + " " +
+							"FROM " + TVSHOWS_TABLE, 
+							null);
+			while(c.moveToNext())
+			{
+				ContentValues values = new ContentValues();
+
+				Long firstAired = null;
+				String firstAiredText = c.getString(1);
+				if(firstAiredText != null)
+				{
+					try
+					{
+						firstAired = dateFormat.parse(firstAiredText).getTime();
+					}
+					catch (ParseException e)
+					{
+						//will be downloaded again on the next refresh of the show
+					}
+				}
+				values.put(KEY_TVSHOW_FIRST_AIRED, firstAired);
+
+				//enums were stored with toString(), store their code
+				String airDay = c.getString(2);
+				values.put(KEY_TVSHOW_AIR_DAY, AIR_DAY_CODES.encode(airDay == null || airDay.equals("") ? null : DayOfTheWeek.fromValue(airDay)));
+
+				String rating = c.getString(3);
+				values.put(KEY_TVSHOW_RATING, RATING_CODES.encode(rating == null ? null : Rating.fromValue(rating)));
+
+				db.update(TVSHOWS_TABLE, values, KEY_ID + "=?", new String[]{c.getString(0)});
+			}
+			c.close();
+
+			db.execSQL(TVSHOWS_FIRST_AIRED_INDEX_CREATE);
+
+			db.execSQL(EPISODES_WATCHED_UPDATE_TRIGGER_CREATE);
+			db.execSQL(EPISODES_UPDATE_TRIGGER_CREATE);
+			db.execSQL(EPISODES_INSERT_TRIGGER_CREATE);
+		}
+
+		private void upgradeFromV9ToV10(SQLiteDatabase db)
+		{
+			db.execSQL(
+					"ALTER TABLE " + SEASONS_TABLE + " " +
+							"ADD COLUMN " + KEY_SEASON_WATCHED_BITMAP + " blob;");
 
-			dbw.close();
+			Cursor c = db.rawQuery("SELECT " + KEY_SEASON_URL + " FROM " + SEASONS_TABLE, null);
+			while(c.moveToNext())
+				refreshWatchedBitmap(db, c.getString(0));
+			c.close();
 		}
 	}
 
@@ -501,6 +789,12 @@ public class DatabaseWrapper
 			{
 				DataBaseOpener dbOpener = new DataBaseOpener(this.context, DATABASE_NAME, null, DATABASE_VERSION);
 				db = dbOpener.getWritableDatabase();
+
+				if(dbOpener.refreshPercentages)
+				{
+					for(TvShow s : getShows())
+						refreshPercentage(s.tvdbId);
+				}
 			}
 			nbOpenedInstances++;
 		}
@@ -525,6 +819,21 @@ public class DatabaseWrapper
 	 * @param values
 	 * @param id
 	 */
+	public void beginTransaction()
+	{
+		db.beginTransaction();
+	}
+
+	public void setTransactionSuccessful()
+	{
+		db.setTransactionSuccessful();
+	}
+
+	public void endTransaction()
+	{
+		db.endTransaction();
+	}
+
 	private void insertOrUpdate(String table, ContentValues values, String id) 
 	{
 		String key_id = "";
@@ -551,7 +860,7 @@ public class DatabaseWrapper
 	/************************** Shows methods *******************************/
 
 	/**
-	 *  Insert or update a tvshow
+	 *  Insert or update a tvshow, call refreshSearchIndex() once its episodes are written too
 	 */
 	public void insertOrUpdateShow(TvShow s) 
 	{
@@ -566,12 +875,9 @@ public class DatabaseWrapper
 		}
 
 		if(s.rating != null)
-			values.put(KEY_TVSHOW_RATING, s.rating.toString());
+			values.put(KEY_TVSHOW_RATING, RATING_CODES.encode(s.rating));
 
-		if(s.airDay != null)
-			values.put(KEY_TVSHOW_AIR_DAY, s.airDay.toString());
-		else
-			values.put(KEY_TVSHOW_AIR_DAY, "");
+		values.put(KEY_TVSHOW_AIR_DAY, AIR_DAY_CODES.encode(s.airDay));
 
 		values.put(KEY_TVSHOW_AIR_TIME, s.airTime);
 		values.put(KEY_TVSHOW_CERTIFICATION, s.certification);
@@ -584,7 +890,7 @@ public class DatabaseWrapper
 		}
 
 		if(s.firstAired != null)
-			values.put(KEY_TVSHOW_FIRST_AIRED, s.firstAired.toString());
+			values.put(KEY_TVSHOW_FIRST_AIRED, s.firstAired.getTime());
 
 		values.put(KEY_TVSHOW_IMDB_ID, s.imdbId);
 		values.put(KEY_TVSHOW_IN_WATCHLIST, s.inWatchlist);
@@ -608,7 +914,16 @@ public class DatabaseWrapper
 	public void insertOrUpdateShows(List<TvShow> shows) 
 	{
 		for(TvShow s : shows)
+		{
 			insertOrUpdateShow(s);
+			refreshSearchIndex(s.tvdbId);
+		}
+	}
+
+	//enums are stored as a fixed code, see EnumCodes
+	private static <T extends Enum<T>> T decodeEnum(EnumCodes<T> codes, Cursor c, int column)
+	{
+		return c.isNull(column) ? null : codes.decode(c.getInt(column));
 	}
 
 	private TvShow getShowFromCursor(Cursor c)
@@ -625,7 +940,7 @@ public class DatabaseWrapper
 		r.percentage = c.getInt(COLUMN_TVSHOW_PERCENTAGE);
 		r.votes = c.getInt(COLUMN_TVSHOW_VOTES);
 
-		show.airDay = DayOfTheWeek.fromValue(c.getString(COLUMN_TVSHOW_AIR_DAY));
+		show.airDay = decodeEnum(AIR_DAY_CODES, c, COLUMN_TVSHOW_AIR_DAY);
 		show.airTime = c.getString(COLUMN_TVSHOW_AIR_TIME);
 		show.certification = c.getString(COLUMN_TVSHOW_CERTIFICATION);
 		show.country = c.getString(COLUMN_TVSHOW_COUNTRY);
@@ -634,7 +949,7 @@ public class DatabaseWrapper
 		show.runtime = c.getInt(COLUMN_TVSHOW_RUNTIME);
 		show.tvdbId = c.getString(COLUMN_TVSHOW_TVDB_ID);
 		show.tvrageId = c.getString(COLUMN_TVSHOW_TVRAGE_ID);
-		show.rating = c.getString(COLUMN_TVSHOW_RATING) == null ? null : Rating.fromValue(c.getString(COLUMN_TVSHOW_RATING));
+		show.rating = decodeEnum(RATING_CODES, c, COLUMN_TVSHOW_RATING);
 		show.inWatchlist = c.getInt(COLUMN_TVSHOW_IN_WATCHLIST) != 0;
 		show.images = i;
 		show.imdbId = c.getString(COLUMN_TVSHOW_IMDB_ID);
@@ -642,6 +957,7 @@ public class DatabaseWrapper
 		show.title = c.getString(COLUMN_TVSHOW_TITLE);
 		show.url = c.getString(COLUMN_TVSHOW_URL);
 		show.year = c.getInt(COLUMN_TVSHOW_YEAR);
+		show.firstAired = c.isNull(COLUMN_TVSHOW_FIRST_AIRED) ? null : new Date(c.getLong(COLUMN_TVSHOW_FIRST_AIRED));
 
 		show.progress = c.getInt(COLUMN_TVSHOW_PROGRESS);
 
@@ -688,34 +1004,101 @@ public class DatabaseWrapper
 		return show;
 	}
 
+	/**
+	 *  Remove a show with its seasons and episodes, in one transaction
+	 *  (we can't rely on foreign keys, they are not enforced before froyo)
+	 */
 	public void removeShow(String tvdbId)
 	{
-		boolean showFound = db.delete(
-				TVSHOWS_TABLE,
-				KEY_TVSHOW_TVDB_ID + "=?",
-				new String[]{tvdbId}) > 0;
+		String[] args = new String[]{tvdbId};
 
-				if(showFound) 
-				{
-					List<TvShowSeason> seasons = getSeasons(tvdbId, true, true);
-					for(TvShowSeason season : seasons)
-					{
-						List<TvShowEpisode> episodes = season.episodes.episodes;
-						db.delete(
-								SEASONS_TABLE,
-								KEY_SEASON_URL + "=?",
-								new String[]{season.url});
-
-						for(TvShowEpisode episode : episodes)
-						{
-							db.delete(
-									EPISODES_TABLE,
-									KEY_EPISODE_URL + "=?",
-									new String[]{episode.url});
-						}
+		db.beginTransaction();
+		try
+		{
+			db.delete(
+					EPISODES_TABLE,
+					KEY_EPISODE_SEASON_ID + " IN (SELECT " + KEY_SEASON_URL + " FROM " + SEASONS_TABLE + " WHERE " + KEY_SEASON_TVSHOW_ID + "=?)",
+					args);
+			db.delete(SEASONS_TABLE, KEY_SEASON_TVSHOW_ID + "=?", args);
+			db.delete(SEARCH_TABLE, "docid=?", args);
+			db.delete(TVSHOWS_TABLE, KEY_TVSHOW_TVDB_ID + "=?", args);
+
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
+	}
 
-					}
-				}
+	/**
+	 *  Delete seasons and episodes whose show is not in the db anymore
+	 *  (left by removeShow() before it was done in a transaction)
+	 *  @return number of rows deleted
+	 */
+	public int removeOrphans()
+	{
+		int deleted = 0;
+
+		db.beginTransaction();
+		try
+		{
+			deleted += db.delete(
+					SEASONS_TABLE,
+					KEY_SEASON_TVSHOW_ID + " NOT IN (SELECT " + KEY_TVSHOW_TVDB_ID + " FROM " + TVSHOWS_TABLE + ")",
+					null);
+			deleted += db.delete(
+					EPISODES_TABLE,
+					KEY_EPISODE_SEASON_ID + " NOT IN (SELECT " + KEY_SEASON_URL + " FROM " + SEASONS_TABLE + ")",
+					null);
+
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
+
+		return deleted;
+	}
+
+	/**
+	 *  @return false if this show is not in the db
+	 */
+	public boolean setShowRating(String tvdbId, Rating rating)
+	{
+		ContentValues values = new ContentValues();
+		values.put(KEY_TVSHOW_RATING, RATING_CODES.encode(rating));
+		return db.update(TVSHOWS_TABLE, values, KEY_TVSHOW_TVDB_ID + "=?", new String[]{tvdbId}) > 0;
+	}
+
+	public void setLastRefresh(String tvdbId, long time)
+	{
+		ContentValues values = new ContentValues();
+		values.put(KEY_TVSHOW_LAST_REFRESH, time);
+		db.update(TVSHOWS_TABLE, values, KEY_TVSHOW_TVDB_ID + "=?", new String[]{tvdbId});
+	}
+
+	/**
+	 *  Shows not refreshed since the given time, the oldest first
+	 */
+	public List<TvShow> getStaleShows(long olderThan, int limit)
+	{
+		List<TvShow> shows = new ArrayList<TvShow>();
+		Cursor c = db.rawQuery(
+				"SELECT * " +
+						"FROM " + TVSHOWS_TABLE + " " +
+						"WHERE " + KEY_TVSHOW_LAST_REFRESH + "<? " +
+						"ORDER BY " + KEY_TVSHOW_LAST_REFRESH + " " +
+						"LIMIT " + limit, 
+						new String[]{String.valueOf(olderThan)});
+
+		while(c.moveToNext())
+			shows.add(getShowFromCursor(c));
+
+		c.close();
+
+		return shows;
 	}
 
 	public boolean showExist(String tvdbId)
@@ -786,6 +1169,9 @@ public class DatabaseWrapper
 
 	public List<TvShowSeason> getSeasons(String tvdbId, boolean getEpisodesToo, boolean orderByASC)
 	{
+		if(getEpisodesToo)
+			return getSeasonsWithEpisodes(tvdbId, orderByASC);
+
 		ArrayList<TvShowSeason> seasons = new ArrayList<TvShowSeason>();
 		String sql = 
 				"SELECT * " + 
@@ -805,6 +1191,48 @@ public class DatabaseWrapper
 		return seasons;
 	}
 
+	/**
+	 *  Seasons and their episodes in one query, rows come season by season 
+	 *  so the graph is built in one pass
+	 */
+	private List<TvShowSeason> getSeasonsWithEpisodes(String tvdbId, boolean orderByASC)
+	{
+		ArrayList<TvShowSeason> seasons = new ArrayList<TvShowSeason>();
+		String sql = 
+				"SELECT " + SELECT_SEASON_WITH_EPISODES + " " + 
+						"FROM " + SEASONS_TABLE + " " +
+						"LEFT JOIN " + EPISODES_TABLE + " " +
+						"ON " + KEY_EPISODE_SEASON_ID + "=" + SEASONS_TABLE+"."+KEY_SEASON_URL + " " +
+						"WHERE " + KEY_SEASON_TVSHOW_ID + "=? " +
+						"ORDER BY " + SEASONS_TABLE+"."+KEY_SEASON_SEASON + (orderByASC ? " ASC" : " DESC") + "," + KEY_EPISODE_EPISODE;
+		Cursor c = db.rawQuery(sql, new String[]{tvdbId});
+
+		TvShowSeason current = null;
+		while(c.moveToNext())
+		{
+			String url = c.getString(COLUMN_JOIN_SEASON_URL);
+			if(current == null || !current.url.equals(url))
+			{
+				current = new TvShowSeason();
+				current.episodes = new Episodes();
+				current.episodes.episodes = new ArrayList<TvShowEpisode>();
+				current.season = c.getInt(COLUMN_JOIN_SEASON_SEASON);
+				current.episodes.count = c.getInt(COLUMN_JOIN_SEASON_EPISODES);
+				current.episodesWatched = c.getInt(COLUMN_JOIN_SEASON_EPISODES_WATCHED);
+				current.url = url;
+				seasons.add(current);
+			}
+
+			//a season without episodes still gives one row
+			if(!c.isNull(COLUMN_EPISODE_URL))
+				current.episodes.episodes.add(getEpisodeFromCursor(c));
+		}
+
+		c.close();
+
+		return seasons;
+	}
+
 	public TvShowSeason getSeason(String tvdbId, int season, boolean getEpisodesToo)
 	{
 		String sql = 
@@ -826,9 +1254,9 @@ public class DatabaseWrapper
 	/************************** Episodes methods *******************************/
 
 	/**
-	 *  Insert or update an episode
+	 *  Insert or update an episode, the watched bitmap of its season has to be refreshed afterwards
 	 */
-	public void insertOrUpdateEpisode(TvShowEpisode e, String seasonId) 
+	private void insertOrUpdateEpisode(TvShowEpisode e, String seasonId, long fetchedAt) 
 	{
 		ContentValues values = new ContentValues();
 
@@ -836,6 +1264,7 @@ public class DatabaseWrapper
 
 		values.put(KEY_EPISODE_EPISODE, e.number);
 		values.put(KEY_EPISODE_FIRST_AIRED, e.firstAired.getTime());
+		values.put(KEY_EPISODE_DAY_KEY, Utils.getDayKey(e.firstAired));
 		values.put(KEY_EPISODE_HATED, e.ratings.hated);
 		values.put(KEY_EPISODE_LOVED, e.ratings.loved);
 		values.put(KEY_EPISODE_OVERVIEW, e.overview);
@@ -845,51 +1274,99 @@ public class DatabaseWrapper
 		values.put(KEY_EPISODE_TITLE, e.title);
 		values.put(KEY_EPISODE_URL, url);
 		values.put(KEY_EPISODE_VOTES, e.ratings.votes);
-		values.put(KEY_EPISODE_WATCHED, e.watched);
 		values.put(KEY_EPISODE_SEASON_ID, seasonId);
 
-		insertOrUpdate(EPISODES_TABLE, values, url);
+		//the watched value is merged apart
+		if(db.update(EPISODES_TABLE, values, KEY_EPISODE_URL + "=?", new String[]{url}) == 0)
+		{
+			values.put(KEY_EPISODE_WATCHED, e.watched);
+			values.put(KEY_EPISODE_WATCHED_MODIFIED, fetchedAt);
+			db.insert(EPISODES_TABLE, null, values);
+		}
+		else
+			mergeWatched(e.watched, fetchedAt, KEY_EPISODE_URL + "=?", new String[]{url});
 	}
 
 	/**
-	 *  Insert or update an episode
-	 *  /!\ be careful, this episode MUST BE ALREADY IN DB /!\
+	 *  @param fetchedAt when the request returning these episodes was sent, a watched value
+	 *  changed locally after that is kept
 	 */
-	public boolean insertOrUpdateEpisode(TvShowEpisode e) 
+	public void insertOrUpdateEpisodes(List<TvShowEpisode> episodes, String seasonId, long fetchedAt)
 	{
-		//this episode is not in db, cancel insertion
-		if(getEpisode(e.url) == null)
-			return false;
+		for(TvShowEpisode e : episodes)
+			insertOrUpdateEpisode(e, seasonId, fetchedAt);
 
-		ContentValues values = new ContentValues();
+		refreshWatchedBitmap(db, seasonId);
+	}
 
-		String url = e.url;
+	/**
+	 *  Last writer wins: only apply a watched value decided after the stored one
+	 *  @return the number of episodes updated
+	 */
+	private int mergeWatched(boolean watched, long modified, String selection, String[] selectionArgs)
+	{
+		ContentValues cv = new ContentValues();
+		cv.put(KEY_EPISODE_WATCHED, watched);
+		cv.put(KEY_EPISODE_WATCHED_MODIFIED, modified);
 
-		values.put(KEY_EPISODE_EPISODE, e.number);
-		values.put(KEY_EPISODE_FIRST_AIRED, e.firstAired.getTime());
-		values.put(KEY_EPISODE_HATED, e.ratings.hated);
-		values.put(KEY_EPISODE_LOVED, e.ratings.loved);
-		values.put(KEY_EPISODE_OVERVIEW, e.overview);
-		values.put(KEY_EPISODE_PERCENTAGE, e.ratings.percentage);
-		values.put(KEY_EPISODE_SCREEN, e.images.screen);
-		values.put(KEY_EPISODE_SEASON, e.season);
-		values.put(KEY_EPISODE_TITLE, e.title);
-		values.put(KEY_EPISODE_URL, url);
-		values.put(KEY_EPISODE_VOTES, e.ratings.votes);
-		values.put(KEY_EPISODE_WATCHED, e.watched);
+		String[] args = new String[selectionArgs.length + 1];
+		System.arraycopy(selectionArgs, 0, args, 0, selectionArgs.length);
+		args[selectionArgs.length] = String.valueOf(modified);
 
-		insertOrUpdate(EPISODES_TABLE, values, url);
+		return db.update(EPISODES_TABLE, cv, selection + " AND " + KEY_EPISODE_WATCHED_MODIFIED + "<=?", args);
+	}
 
-		return true;
+	/**
+	 *  Rebuild the watched bitmap of a season from its episodes
+	 */
+	private static void refreshWatchedBitmap(SQLiteDatabase db, String seasonId)
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(null);
+
+		Cursor c = db.rawQuery(
+				"SELECT " + KEY_EPISODE_EPISODE + " " +
+						"FROM " + EPISODES_TABLE + " " +
+						"WHERE " + KEY_EPISODE_SEASON_ID + "=? " +
+						"AND " + KEY_EPISODE_WATCHED + "=1", 
+						new String[]{seasonId});
+		while(c.moveToNext())
+			bitmap.setWatched(c.getInt(0), true);
+		c.close();
+
+		ContentValues cv = new ContentValues();
+		cv.put(KEY_SEASON_WATCHED_BITMAP, bitmap.toBytes());
+		db.update(SEASONS_TABLE, cv, KEY_SEASON_URL + "=?", new String[]{seasonId});
+	}
+
+	//null if the season is not in the db
+	private String getSeasonUrl(String tvdbId, int season)
+	{
+		Cursor c = db.rawQuery(
+				"SELECT " + KEY_SEASON_URL + " " +
+						"FROM " + SEASONS_TABLE + " " +
+						"WHERE " + KEY_SEASON_TVSHOW_ID + "=? " +
+						"AND " + KEY_SEASON_SEASON + "=?", 
+						new String[]{tvdbId, String.valueOf(season)});
+		String url = c.moveToFirst() ? c.getString(0) : null;
+		c.close();
+
+		return url;
 	}
 
 	/**
-	 *  Insert or update a list of seasons
+	 *  @return the watched bitmap of a season, empty if the season is not in the db
 	 */
-	public void insertOrUpdateEpisodes(List<TvShowEpisode> episodes, String seasonId)
+	public WatchedBitmap getWatchedBitmap(String seasonId)
 	{
-		for(TvShowEpisode e : episodes)
-			insertOrUpdateEpisode(e, seasonId);
+		Cursor c = db.rawQuery(
+				"SELECT " + KEY_SEASON_WATCHED_BITMAP + " " +
+						"FROM " + SEASONS_TABLE + " " +
+						"WHERE " + KEY_SEASON_URL + "=?", 
+						new String[]{seasonId});
+		byte[] bytes = c.moveToFirst() ? c.getBlob(0) : null;
+		c.close();
+
+		return new WatchedBitmap(bytes);
 	}
 
 	private TvShowEpisode getEpisodeFromCursor(Cursor c)
@@ -979,22 +1456,210 @@ public class DatabaseWrapper
 		return tvEpisode;
 	}
 
-	public void markEpisodeAsWatched(boolean watched, String tvdbId, int season, int episode)
+	/**
+	 *  @return false if this episode is not in the db
+	 */
+	public boolean markEpisodeAsWatched(boolean watched, long modified, String tvdbId, int season, int episode)
 	{
-		ContentValues cv = new ContentValues();
-		cv.put(KEY_EPISODE_WATCHED, watched);
+		String seasonId = getSeasonUrl(tvdbId, season);
+		if(seasonId == null)
+			return false;
 
-		db.update(
-				EPISODES_TABLE, 
-				cv, 
-				KEY_EPISODE_SEASON + "=? AND " + KEY_EPISODE_EPISODE + "=? " +
-						"AND " + KEY_EPISODE_SEASON_ID + " " +
-						"IN (SELECT " + KEY_SEASON_URL + " " +
-						"FROM " + SEASONS_TABLE + " " +
-						"WHERE " + KEY_SEASON_TVSHOW_ID + "=?)", 
-						new String[]{String.valueOf(season), String.valueOf(episode), tvdbId});
+		String selection = KEY_EPISODE_SEASON_ID + "=? AND " + KEY_EPISODE_EPISODE + "=?";
+		String[] args = new String[]{seasonId, String.valueOf(episode)};
+
+		if(mergeWatched(watched, modified, selection, args) > 0)
+		{
+			WatchedBitmap bitmap = getWatchedBitmap(seasonId);
+			bitmap.setWatched(episode, watched);
+
+			ContentValues cv = new ContentValues();
+			cv.put(KEY_SEASON_WATCHED_BITMAP, bitmap.toBytes());
+			db.update(SEASONS_TABLE, cv, KEY_SEASON_URL + "=?", new String[]{seasonId});
+
+			return true;
+		}
+
+		//nothing updated, either unknown or changed more recently
+		Cursor c = db.rawQuery("SELECT count(*) FROM " + EPISODES_TABLE + " WHERE " + selection, args);
+		c.moveToFirst();
+		boolean exists = c.getInt(0) > 0;
+		c.close();
+
+		return exists;
 	}
 
+	/**
+	 *  Mark every episode of a season in one statement
+	 *  @return false if this season is not in the db
+	 */
+	public boolean markSeasonAsWatched(boolean watched, long modified, String tvdbId, int season)
+	{
+		String seasonId = getSeasonUrl(tvdbId, season);
+		if(seasonId == null)
+			return false;
+
+		int updated = mergeWatched(watched, modified, KEY_EPISODE_SEASON_ID + "=?", new String[]{seasonId});
+		if(updated == 0)
+			return true;
+
+		Cursor c = db.rawQuery(
+				"SELECT count(*),min(" + KEY_EPISODE_EPISODE + "),max(" + KEY_EPISODE_EPISODE + ") " +
+						"FROM " + EPISODES_TABLE + " " +
+						"WHERE " + KEY_EPISODE_SEASON_ID + "=?", 
+						new String[]{seasonId});
+		c.moveToFirst();
+		int count = c.getInt(0);
+		int first = c.getInt(1);
+		int last = c.getInt(2);
+		c.close();
+
+		//every episode (numbered without gaps) has the new value, no need to read them again
+		if(updated == count && last - first + 1 == count)
+		{
+			WatchedBitmap bitmap = new WatchedBitmap(null);
+			if(watched)
+				bitmap.setWatched(first, last, true);
+
+			ContentValues cv = new ContentValues();
+			cv.put(KEY_SEASON_WATCHED_BITMAP, bitmap.toBytes());
+			db.update(SEASONS_TABLE, cv, KEY_SEASON_URL + "=?", new String[]{seasonId});
+		}
+		//some were changed more recently
+		else
+			refreshWatchedBitmap(db, seasonId);
+
+		return true;
+	}
+
+
+	/************************** Shouts methods *******************************/
+
+	/**
+	 *  Replace the cached shouts of a show or an episode
+	 */
+	public void replaceShouts(String target, List<Shout> shouts)
+	{
+		db.beginTransaction();
+		try
+		{
+			db.delete(SHOUTS_TABLE, KEY_SHOUT_TARGET + "=?", new String[]{target});
+			for(Shout s : shouts)
+				insertShout(target, s);
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
+	}
+
+	public void insertShout(String target, Shout s)
+	{
+		ContentValues values = new ContentValues();
+
+		values.put(KEY_SHOUT_TARGET, target);
+		if(s.user != null)
+		{
+			values.put(KEY_SHOUT_USERNAME, s.user.username);
+			values.put(KEY_SHOUT_AVATAR, s.user.avatar);
+		}
+		if(s.inserted != null)
+			values.put(KEY_SHOUT_INSERTED, s.inserted.getTimeInMillis());
+		values.put(KEY_SHOUT_SHOUT, s.shout);
+		values.put(KEY_SHOUT_SPOILER, s.spoiler);
+
+		db.insert(SHOUTS_TABLE, null, values);
+	}
+
+	private Shout getShoutFromCursor(Cursor c)
+	{
+		Shout s = new Shout();
+
+		s.user = new UserProfile();
+		s.user.username = c.getString(COLUMN_SHOUT_USERNAME);
+		s.user.avatar = c.getString(COLUMN_SHOUT_AVATAR);
+		s.inserted = Calendar.getInstance();
+		s.inserted.setTimeInMillis(c.getLong(COLUMN_SHOUT_INSERTED));
+		s.shout = c.getString(COLUMN_SHOUT_SHOUT);
+		s.spoiler = c.getInt(COLUMN_SHOUT_SPOILER) != 0;
+
+		return s;
+	}
+
+	/**
+	 *  Get a page of the cached shouts of a show or an episode, newest first
+	 */
+	public List<Shout> getShouts(String target, int offset, int limit)
+	{
+		List<Shout> shouts = new ArrayList<Shout>();
+		Cursor c = db.rawQuery(
+				"SELECT * " +
+						"FROM " + SHOUTS_TABLE + " " +
+						"WHERE " + KEY_SHOUT_TARGET + "=? " +
+						"ORDER BY " + KEY_SHOUT_INSERTED + " DESC " +
+						"LIMIT " + limit + " OFFSET " + offset, 
+						new String[]{target});
+		c.moveToFirst();
+		for(int i = 0; i < c.getCount(); i++)
+		{
+			shouts.add(getShoutFromCursor(c));
+			c.moveToNext();
+		}
+
+		c.close();
+
+		return shouts;
+	}
+
+	/************************** Search methods *******************************/
+
+	/**
+	 *  Rebuild the full text index row of a show (its title, overview, network and episodes titles),
+	 *  call it once the show and all its seasons are written
+	 */
+	public void refreshSearchIndex(String tvdbId)
+	{
+		db.delete(SEARCH_TABLE, "docid=?", new String[]{tvdbId});
+		db.execSQL(SEARCH_TABLE_FILL + " WHERE " + KEY_TVSHOW_TVDB_ID + "=?", new String[]{tvdbId});
+	}
+
+	/**
+	 *  Search the library, each word of the query is used as a prefix
+	 *  ("brea bad" matches "Breaking Bad") in titles, overviews, networks and episodes titles
+	 */
+	public List<TvShow> searchShows(String query)
+	{
+		List<TvShow> shows = new ArrayList<TvShow>();
+
+		StringBuilder match = new StringBuilder();
+		for(String word : query.split("[^\\p{L}\\p{N}]+"))
+		{
+			if(word.length() > 0)
+				match.append(word).append("* ");
+		}
+
+		if(match.length() == 0)
+			return shows;
+
+		Cursor c = db.rawQuery(
+				"SELECT * " +
+						"FROM " + TVSHOWS_TABLE + " " +
+						"WHERE " + KEY_TVSHOW_TVDB_ID + " IN " +
+						"(SELECT docid FROM " + SEARCH_TABLE + " WHERE " + SEARCH_TABLE + " MATCH ?) " +
+						"ORDER BY " + KEY_TVSHOW_TITLE, 
+						new String[]{match.toString().trim()});
+		c.moveToFirst();
+		for(int i = 0; i < c.getCount(); i++)
+		{
+			shows.add(getShowFromCursor(c));
+			c.moveToNext();
+		}
+
+		c.close();
+
+		return shows;
+	}
 
 	/************************** Other methods *******************************/
 
@@ -1005,59 +1670,68 @@ public class DatabaseWrapper
 		return !c.moveToFirst();
 	}
 
+	/**
+	 *  First episode not watched (specials excluded), found with the seasons bitmaps
+	 */
 	public TvShowEpisode getNextEpisode(String tvdbId)
 	{
-		String sql = 
-				"SELECT " + SELECT_EPISODE + " " +
-						"FROM " + EPISODES_TABLE + "," + SEASONS_TABLE + " " +
-						"WHERE " + SEASONS_TABLE+"."+KEY_SEASON_URL + "=" + KEY_EPISODE_SEASON_ID + " " +
-						"AND " + SEASONS_TABLE+"."+KEY_SEASON_SEASON + "!=? " +
-						"AND " + KEY_EPISODE_WATCHED + "=? " + 
-						"AND " + KEY_SEASON_TVSHOW_ID + "=? " +
-						"ORDER BY " + EPISODES_TABLE+"."+KEY_EPISODE_SEASON + "," + KEY_EPISODE_EPISODE + " ASC LIMIT 1";
-
-		Cursor c = db.rawQuery(sql, new String[]{String.valueOf(0), String.valueOf(0), tvdbId});
-		c.moveToFirst();
+		//numbers may have gaps, search up to the last episode and not the number of episodes
+		Cursor c = db.rawQuery(
+				"SELECT " + KEY_SEASON_URL + "," + 
+						"(SELECT max(" + KEY_EPISODE_EPISODE + ") FROM " + EPISODES_TABLE + " WHERE " + EPISODES_TABLE+"."+KEY_EPISODE_SEASON_ID + "=" + SEASONS_TABLE+"."+KEY_SEASON_URL + ")," + 
+						KEY_SEASON_WATCHED_BITMAP + " " +
+						"FROM " + SEASONS_TABLE + " " +
+						"WHERE " + KEY_SEASON_TVSHOW_ID + "=? " +
+						"AND " + KEY_SEASON_SEASON + "!=0 " +
+						"ORDER BY " + KEY_SEASON_SEASON + " ASC", 
+						new String[]{tvdbId});
 
-		TvShowEpisode tvEpisode = getEpisodeFromCursor(c);
+		TvShowEpisode tvEpisode = null;
+		while(tvEpisode == null && c.moveToNext())
+		{
+			String seasonId = c.getString(0);
+			int last = c.getInt(1);
+			WatchedBitmap bitmap = new WatchedBitmap(c.getBlob(2));
+
+			//episodes are numbered from 1, skip numbers missing in the db
+			for(int episode = bitmap.nextUnwatched(1, last); tvEpisode == null && episode != -1; episode = bitmap.nextUnwatched(episode + 1, last))
+				tvEpisode = getEpisode(seasonId, episode);
+		}
 
 		c.close();
 
-		return tvEpisode;		
+		return tvEpisode;
 	}
 
 	//refresh a show percentage (based on episodes watched, episodes not aired yet, specials episodes...)
 	public int refreshPercentage(String tvdbId)
 	{
+		//watched episodes come from the bitmaps, only aired episodes are counted
 		String sql = 
-				"SELECT " + KEY_TVSHOW_EPISODES + "," + KEY_TVSHOW_EPISODES_WATCHED + " " +
-						"FROM " + TVSHOWS_TABLE + " " +
-						"WHERE " + KEY_TVSHOW_TVDB_ID + "=?";
-
-		Cursor c = db.rawQuery(sql , new String[]{tvdbId});
-		c.moveToFirst();
+				"SELECT " + KEY_SEASON_WATCHED_BITMAP + "," + 
+						"(SELECT count(*) FROM " + EPISODES_TABLE + " " +
+						"WHERE " + EPISODES_TABLE+"."+KEY_EPISODE_SEASON_ID + "=" + SEASONS_TABLE+"."+KEY_SEASON_URL + " " +
+						"AND " + EPISODES_TABLE+"."+KEY_EPISODE_EPISODE + "!=0 " +
+						"AND " + EPISODES_TABLE+"."+KEY_EPISODE_FIRST_AIRED + "!=0 " +
+						"AND " + EPISODES_TABLE+"."+KEY_EPISODE_FIRST_AIRED + "<=?) " +
+						"FROM " + SEASONS_TABLE + " " +
+						"WHERE " + KEY_SEASON_TVSHOW_ID + "=? " +
+						"AND " + KEY_SEASON_SEASON + "!=0";
 
-		int numberOfEpisodes = c.getInt(0);
-		int numberOfEpisodesSeen = c.getInt(1);
+		Cursor c = db.rawQuery(sql, new String[]{String.valueOf(new Date().getTime()), tvdbId});
 
-		String sql2 = 
-				"SELECT count(*) " +
-						"FROM " + EPISODES_TABLE + "," + SEASONS_TABLE + " " +
-						"WHERE " + SEASONS_TABLE+"."+KEY_SEASON_URL + "=" + KEY_EPISODE_SEASON_ID + " " + 
-						"AND " + KEY_SEASON_TVSHOW_ID + "=? " +
-						"AND " + SEASONS_TABLE+"."+KEY_SEASON_SEASON + "!=? " +
-						"AND(" + KEY_EPISODE_FIRST_AIRED + "=? " + " " +
-						"OR " + KEY_EPISODE_FIRST_AIRED + "> ? " + 
-						"OR " + EPISODES_TABLE+"."+KEY_EPISODE_EPISODE + "=? )";
+		int numberOfEpisodes = 0;
+		int numberOfEpisodesSeen = 0;
+		while(c.moveToNext())
+		{
+			WatchedBitmap bitmap = new WatchedBitmap(c.getBlob(0));
+			//episode 0 is not counted
+			numberOfEpisodesSeen += bitmap.count() - (bitmap.isWatched(0) ? 1 : 0);
+			numberOfEpisodes += c.getInt(1);
+		}
 
 		c.close();
 
-		Cursor c2 = db.rawQuery(sql2 , new String[]{tvdbId, String.valueOf(0), String.valueOf(0), String.valueOf(new Date().getTime()), String.valueOf(0)});
-		c2.moveToFirst();
-		numberOfEpisodes -= c2.getInt(0);
-
-		c2.close();
-
 		int realPercentage = (int) ((numberOfEpisodesSeen*1.0/numberOfEpisodes*1.0)*100);
 		realPercentage = (realPercentage > 100) ? 100 : ((realPercentage < 0) ? 0 : realPercentage);
 
@@ -1077,24 +1751,31 @@ public class DatabaseWrapper
 	{
 		ArrayList<CalendarDate> episodes = new ArrayList<CalendarDate>();
 		String sql = 
-				"SELECT * " + 
-						"FROM " + EPISODES_TABLE + ", " + SEASONS_TABLE + ", " + TVSHOWS_TABLE + " " +
-						"WHERE " + KEY_EPISODE_SEASON_ID + "=" + SEASONS_TABLE+"."+KEY_SEASON_URL + " " +
-						"AND " + KEY_SEASON_TVSHOW_ID + "=" + KEY_TVSHOW_TVDB_ID + " " +
-						"AND " + EPISODES_TABLE+"."+KEY_EPISODE_FIRST_AIRED + ">=?" +  " " +
+				"SELECT " + SELECT_CALENDAR + " " +
+						"FROM " + EPISODES_TABLE + " " +
+						"JOIN " + SEASONS_TABLE + " ON " + EPISODES_TABLE+"."+KEY_EPISODE_SEASON_ID + "=" + SEASONS_TABLE+"."+KEY_SEASON_URL + " " +
+						"JOIN " + TVSHOWS_TABLE + " ON " + SEASONS_TABLE+"."+KEY_SEASON_TVSHOW_ID + "=" + TVSHOWS_TABLE+"."+KEY_TVSHOW_TVDB_ID + " " +
+						"WHERE " + EPISODES_TABLE+"."+KEY_EPISODE_FIRST_AIRED + ">=? " +
 						"ORDER BY " + EPISODES_TABLE+"."+KEY_EPISODE_FIRST_AIRED;
 
 		Cursor c = db.rawQuery(sql, new String[]{String.valueOf(new Date().getTime())});
-		c.moveToFirst();
 
 		CalendarDate cd = null;
-		for(int i = 0; i < c.getCount(); i++)
+		int dayKey = 0;
+		while(c.moveToNext())
 		{
-			TvShowEpisode e = getEpisodeFromCursor(c);
-			e.images.screen = null;
-			
-			if(cd == null || !Utils.isSameDay(cd.date, e.firstAired))
+			//no screen, the calendar displays the show's poster instead
+			TvShowEpisode e = new TvShowEpisode();
+			e.season = c.getInt(COLUMN_CALENDAR_SEASON);
+			e.number = c.getInt(COLUMN_CALENDAR_EPISODE);
+			e.title = c.getString(COLUMN_CALENDAR_TITLE);
+			e.firstAired = new Date(c.getLong(COLUMN_CALENDAR_FIRST_AIRED));
+			e.url = c.getString(COLUMN_CALENDAR_URL);
+			e.images = new Images();
+
+			if(cd == null || c.getInt(COLUMN_CALENDAR_DAY_KEY) != dayKey)
 			{
+				dayKey = c.getInt(COLUMN_CALENDAR_DAY_KEY);
 				cd = new CalendarDate();
 				cd.date = e.firstAired;
 				cd.episodes = new ArrayList<CalendarTvShowEpisode>();
@@ -1105,19 +1786,17 @@ public class DatabaseWrapper
 
 			TvShow s = new TvShow();
 
-			s.airTime = c.getString(c.getColumnIndex(KEY_TVSHOW_AIR_TIME));
-			s.title = c.getString(c.getColumnIndex(KEY_TVSHOW_TITLE));
-			s.tvdbId = c.getString(c.getColumnIndex(KEY_TVSHOW_TVDB_ID));
-			s.network = c.getString(c.getColumnIndex(KEY_TVSHOW_NETWORK));
-			
+			s.airTime = c.getString(COLUMN_CALENDAR_AIR_TIME);
+			s.title = c.getString(COLUMN_CALENDAR_SHOW_TITLE);
+			s.tvdbId = c.getString(COLUMN_CALENDAR_TVDB_ID);
+			s.network = c.getString(COLUMN_CALENDAR_NETWORK);
+
 			s.images = new Images();
-			s.images.poster = c.getString(c.getColumnIndex(KEY_TVSHOW_POSTER));
+			s.images.poster = c.getString(COLUMN_CALENDAR_POSTER);
 
 			cde.show = s;
 			cde.episode = e;
 			cd.episodes.add(cde);
-
-			c.moveToNext();
 		}
 
 		c.close();
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.db;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Integer stored in the db for each constant of an enum.
+ * Codes are written once by hand and never change (nor are reused), unlike ordinals
+ * they don't move if trakt-java adds, removes or reorders constants.
+ */
+public class EnumCodes<T extends Enum<T>>
+{
+	private final Map<T, Integer> codes;
+	private final Map<Integer, T> constants = new HashMap<Integer, T>();
+
+	public EnumCodes(Class<T> type)
+	{
+		codes = new EnumMap<T, Integer>(type);
+	}
+
+	public EnumCodes<T> put(int code, T constant)
+	{
+		if(constants.containsKey(code) || codes.containsKey(constant))
+			throw new IllegalArgumentException("Code " + code + " or " + constant + " is already used");
+
+		codes.put(constant, code);
+		constants.put(code, constant);
+		return this;
+	}
+
+	//null for null and for a constant without a code (added to trakt-java since)
+	public Integer encode(T constant)
+	{
+		return constant == null ? null : codes.get(constant);
+	}
+
+	//null if the code is unknown (ex: its constant was removed from trakt-java)
+	public T decode(int code)
+	{
+		return constants.get(code);
+	}
+}
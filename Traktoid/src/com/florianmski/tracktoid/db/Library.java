@@ -0,0 +1,210 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+
+import com.jakewharton.trakt.entities.TvShow;
+import com.jakewharton.trakt.enumerations.Rating;
+
+/**
+ * Immutable snapshot of the shows in the db, shared by the whole app.
+ * Reads are simple memory lookups from any thread, writes build a new snapshot
+ * and swap it (copy on write).
+ * The db stays the source of truth: the snapshot is loaded from it the first time
+ * it's needed and write paths call put()/remove() once the db is up to date.
+ * Shows returned here are shared, don't modify them.
+ */
+public class Library
+{
+	public static final int FILTER_ALL = 0;
+	public static final int FILTER_UNWATCHED = 1;
+	public static final int FILTER_LOVED = 2;
+	public static final int NB_FILTERS = 3;
+
+	private static volatile Library current;
+	//incremented by each write, so a load racing with a write is not published
+	private static long version = 0;
+
+	//sorted like DatabaseWrapper.getShows()
+	private final List<TvShow> shows;
+	private final Map<String, TvShow> byTvdbId;
+	private final List<List<TvShow>> views;
+
+	private Library(List<TvShow> sortedShows)
+	{
+		shows = Collections.unmodifiableList(sortedShows);
+
+		Map<String, TvShow> map = new HashMap<String, TvShow>(sortedShows.size() * 2);
+		for(TvShow s : sortedShows)
+			map.put(s.tvdbId, s);
+		byTvdbId = Collections.unmodifiableMap(map);
+
+		List<List<TvShow>> filterViews = new ArrayList<List<TvShow>>(NB_FILTERS);
+		filterViews.add(shows);
+		for(int filter = 1; filter < NB_FILTERS; filter++)
+		{
+			List<TvShow> view = new ArrayList<TvShow>();
+			for(TvShow s : sortedShows)
+			{
+				if(matchFilter(s, filter))
+					view.add(s);
+			}
+			filterViews.add(Collections.unmodifiableList(view));
+		}
+		views = Collections.unmodifiableList(filterViews);
+	}
+
+	public static boolean matchFilter(TvShow s, int filter)
+	{
+		switch(filter)
+		{
+		case FILTER_UNWATCHED :
+			return s.progress < 100;
+		case FILTER_LOVED :
+			return s.rating == Rating.Love;
+		default :
+			return true;
+		}
+	}
+
+	/**
+	 * @return the current snapshot, null if it hasn't been loaded yet
+	 */
+	public static Library peek()
+	{
+		return current;
+	}
+
+	/**
+	 * @return the current snapshot, loaded from the db if needed (which is blocking the first time)
+	 */
+	public static Library get(Context context)
+	{
+		Library library = current;
+		while(library == null)
+		{
+			long loadVersion;
+			synchronized(Library.class)
+			{
+				if(current != null)
+					return current;
+				loadVersion = version;
+			}
+
+			DatabaseWrapper dbw = new DatabaseWrapper(context);
+			dbw.open();
+			List<TvShow> shows = dbw.getShows();
+			dbw.close();
+
+			synchronized(Library.class)
+			{
+				//a write happened while we were reading, read again
+				if(version == loadVersion && current == null)
+					current = new Library(new ArrayList<TvShow>(shows));
+				library = current;
+			}
+		}
+
+		return library;
+	}
+
+	/**
+	 * Insert or replace a show, call it once the show is written in the db
+	 */
+	public static synchronized void put(TvShow show)
+	{
+		version++;
+
+		if(current == null || show == null)
+			return;
+
+		List<TvShow> shows = new ArrayList<TvShow>(current.shows);
+		removeById(shows, show.tvdbId);
+		int index = Collections.binarySearch(shows, show);
+		shows.add(index < 0 ? -index-1 : index, show);
+
+		current = new Library(shows);
+	}
+
+	/**
+	 * Call it once the show is removed from the db
+	 */
+	public static synchronized void remove(String tvdbId)
+	{
+		version++;
+
+		if(current == null || !current.contains(tvdbId))
+			return;
+
+		List<TvShow> shows = new ArrayList<TvShow>(current.shows);
+		removeById(shows, tvdbId);
+
+		current = new Library(shows);
+	}
+
+	//next get() will read the db again
+	public static synchronized void invalidate()
+	{
+		version++;
+		current = null;
+	}
+
+	private static void removeById(List<TvShow> shows, String tvdbId)
+	{
+		for(int i = 0; i < shows.size(); i++)
+		{
+			if(shows.get(i).tvdbId.equals(tvdbId))
+			{
+				shows.remove(i);
+				return;
+			}
+		}
+	}
+
+	public List<TvShow> getShows()
+	{
+		return shows;
+	}
+
+	public List<TvShow> getShows(int filter)
+	{
+		return views.get(filter);
+	}
+
+	//null if this show is not in the library
+	public TvShow getShow(String tvdbId)
+	{
+		return byTvdbId.get(tvdbId);
+	}
+
+	public boolean contains(String tvdbId)
+	{
+		return byTvdbId.containsKey(tvdbId);
+	}
+
+	public boolean isEmpty()
+	{
+		return shows.isEmpty();
+	}
+}
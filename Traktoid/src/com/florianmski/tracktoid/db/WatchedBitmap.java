@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.db;
+
+/**
+ * Watched episodes of a season, one bit by episode number.
+ * Stored as a blob in the seasons table (a few bytes for a whole season).
+ */
+public class WatchedBitmap
+{
+	private byte[] bits;
+
+	/**
+	 * @param bytes as stored in the db, null means nothing watched
+	 */
+	public WatchedBitmap(byte[] bytes)
+	{
+		this.bits = bytes == null ? new byte[0] : bytes;
+	}
+
+	public boolean isWatched(int episode)
+	{
+		int index = episode >> 3;
+		return episode >= 0 && index < bits.length && (bits[index] & (1 << (episode & 7))) != 0;
+	}
+
+	public void setWatched(int episode, boolean watched)
+	{
+		if(episode < 0)
+			return;
+
+		int index = episode >> 3;
+		if(index >= bits.length)
+		{
+			//nothing to clear
+			if(!watched)
+				return;
+
+			byte[] grown = new byte[index + 1];
+			System.arraycopy(bits, 0, grown, 0, bits.length);
+			bits = grown;
+		}
+
+		if(watched)
+			bits[index] |= (1 << (episode & 7));
+		else
+			bits[index] &= ~(1 << (episode & 7));
+	}
+
+	//from and to included
+	public void setWatched(int from, int to, boolean watched)
+	{
+		//the last one first, the array is only grown once
+		for(int episode = to; episode >= from; episode--)
+			setWatched(episode, watched);
+	}
+
+	//number of watched episodes
+	public int count()
+	{
+		int count = 0;
+		for(byte b : bits)
+			count += Integer.bitCount(b & 0xff);
+		return count;
+	}
+
+	/**
+	 * @return first episode between from and to (included) which is not watched, -1 if there is none
+	 */
+	public int nextUnwatched(int from, int to)
+	{
+		for(int episode = Math.max(from, 0); episode <= to; episode++)
+		{
+			//skip full bytes
+			int index = episode >> 3;
+			if((episode & 7) == 0 && index < bits.length && bits[index] == (byte) 0xff)
+			{
+				episode += 7;
+				continue;
+			}
+
+			if(!isWatched(episode))
+				return episode;
+		}
+
+		return -1;
+	}
+
+	public byte[] toBytes()
+	{
+		return bits;
+	}
+}
@@ -20,6 +20,7 @@ import java.util.List;
 
 import com.florianmski.tracktoid.db.tasks.DBTask.DBListener;
 import com.jakewharton.trakt.entities.CalendarDate;
+import com.jakewharton.trakt.entities.Shout;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.entities.TvShowEpisode;
 import com.jakewharton.trakt.entities.TvShowSeason;
@@ -34,4 +35,6 @@ public abstract class DBAdapter implements DBListener
 	public void onDBEpisodes(List<TvShowEpisode> episodes) {}
 	@Override
 	public void onDBCalendar(List<CalendarDate> calendar) {}
+	@Override
+	public void onDBShouts(List<Shout> shouts) {}
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.db.tasks;
+
+import java.util.List;
+
+import android.content.Context;
+
+import com.jakewharton.trakt.entities.Shout;
+
+public class DBShoutsTask extends DBTask
+{
+	private String target;
+	private int offset;
+	private int limit;
+	private List<Shout> shouts;
+	
+	public DBShoutsTask(Context context, DBListener listener, String target, int offset, int limit) 
+	{
+		super(context, listener);
+		this.target = target;
+		this.offset = offset;
+		this.limit = limit;
+	}
+	
+	@Override
+	protected void doDBStuff() 
+	{
+		shouts = dbw.getShouts(target, offset, limit);
+	}
+	
+	@Override
+	protected void onPostExecute (Boolean success)
+	{
+		//null if it failed, the caller may be waiting for this page
+		listener.onDBShouts(success ? shouts : null);
+	}
+	
+}
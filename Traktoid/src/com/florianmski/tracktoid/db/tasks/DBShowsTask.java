@@ -16,10 +16,12 @@
 
 package com.florianmski.tracktoid.db.tasks;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import android.content.Context;
 
+import com.florianmski.tracktoid.db.Library;
 import com.jakewharton.trakt.entities.TvShow;
 
 public class DBShowsTask extends DBTask
@@ -34,7 +36,8 @@ public class DBShowsTask extends DBTask
 	@Override
 	protected void doDBStuff() 
 	{
-		shows = dbw.getShows();		
+		//the adapter sorts and edits this list, give it its own copy
+		shows = new ArrayList<TvShow>(Library.get(context).getShows());
 	}
 	
 	@Override
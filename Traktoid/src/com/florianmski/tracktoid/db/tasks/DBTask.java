@@ -19,15 +19,16 @@ package com.florianmski.tracktoid.db.tasks;
 import java.util.List;
 
 import android.content.Context;
-import android.os.AsyncTask;
 
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.tasks.BaseTask;
 import com.jakewharton.trakt.entities.CalendarDate;
+import com.jakewharton.trakt.entities.Shout;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.entities.TvShowEpisode;
 import com.jakewharton.trakt.entities.TvShowSeason;
 
-public abstract class DBTask extends AsyncTask<Void, String, Boolean>
+public abstract class DBTask extends BaseTask<Void, String, Boolean>
 {
 	protected DBListener listener;
 	protected Context context;
@@ -40,7 +41,7 @@ public abstract class DBTask extends AsyncTask<Void, String, Boolean>
 	}
 	
 	@Override
-	protected Boolean doInBackground(Void... params) 
+	protected Boolean runInBackground(Void... params) 
 	{		
 		dbw = new DatabaseWrapper(context);
 		dbw.open();
@@ -67,6 +68,7 @@ public abstract class DBTask extends AsyncTask<Void, String, Boolean>
 		public void onDBSeasons(List<TvShowSeason> seasons);
 		public void onDBEpisodes(List<TvShowEpisode> episodes);
 		public void onDBCalendar(List<CalendarDate> calendar);
+		public void onDBShouts(List<Shout> shouts);
 	}
 
 }
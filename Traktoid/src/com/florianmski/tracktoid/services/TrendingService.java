@@ -0,0 +1,295 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.services;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.androidquery.util.AQUtility;
+import com.florianmski.tracktoid.EntityCodec;
+import com.florianmski.tracktoid.Utils;
+import com.florianmski.tracktoid.image.Image;
+import com.florianmski.tracktoid.tasks.BaseTask;
+import com.florianmski.tracktoid.trakt.TraktManager;
+import com.jakewharton.trakt.entities.TvShow;
+
+/**
+ * Keeps a snapshot of the trending shows on disk and refreshes it from time to time,
+ * so the trending screen can open without waiting for trakt.
+ * Posters of the first shows are downloaded into the AQuery file cache on the way.
+ */
+public class TrendingService extends IntentService
+{
+	private static final String TAG = "TrendingService";
+
+	//one of the predefined intervals so the alarm can be batched by the system
+	public static final long REFRESH_INTERVAL = AlarmManager.INTERVAL_HALF_DAY;
+	//number of posters to download in advance
+	private static final int PREWARM_COUNT = 10;
+	private static final String SNAPSHOT_FILE = "trending.bin";
+	//a stalled poster must not block the queue of the service
+	private static final int CONNECT_TIMEOUT = 10 * 1000;
+	private static final int READ_TIMEOUT = 20 * 1000;
+
+	//download the posters of the snapshot, it's already up to date
+	private static final String ACTION_PREWARM = "com.florianmski.tracktoid.action.PREWARM_TRENDING";
+
+	public TrendingService()
+	{
+		super(TAG);
+	}
+
+	//persist shows we already have in hand instead of asking trakt again, the service only reads them back for their posters
+	public static void update(final Context context, final ArrayList<TvShow> shows)
+	{
+		new BaseTask<Void, Void, Boolean>()
+		{
+			@Override
+			protected Boolean runInBackground(Void... params)
+			{
+				return saveSnapshot(context, shows);
+			}
+
+			@Override
+			protected void onPostExecute(Boolean saved)
+			{
+				if(saved)
+					context.startService(new Intent(context, TrendingService.class).setAction(ACTION_PREWARM));
+			}
+		}.launch();
+	}
+
+	public static void schedule(Context context)
+	{
+		Intent intent = new Intent(context, TrendingService.class);
+		//already armed, arming it again at each start of the process would push it back forever
+		if(PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null)
+			return;
+
+		AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		PendingIntent pi = PendingIntent.getService(context, 0, intent, 0);
+		//inexact and non waking, let the system batch it with other alarms
+		am.setInexactRepeating(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + REFRESH_INTERVAL, REFRESH_INTERVAL, pi);
+	}
+
+	public static boolean isStale(Context context)
+	{
+		File f = getSnapshotFile(context);
+		return !f.exists() || System.currentTimeMillis() - f.lastModified() > REFRESH_INTERVAL;
+	}
+
+	//does disk I/O and decoding, don't call it from the ui thread
+	public static ArrayList<TvShow> getSnapshot(Context context)
+	{
+		byte[] bytes = readSnapshot(context);
+		return bytes == null ? null : decodeSnapshot(bytes);
+	}
+
+	/**
+	 * Only the disk part of getSnapshot(), decode it with decodeSnapshot()
+	 * @return null if there is no snapshot
+	 */
+	public static byte[] readSnapshot(Context context)
+	{
+		File f = getSnapshotFile(context);
+		if(!f.exists())
+			return null;
+
+		FileInputStream in = null;
+		try
+		{
+			in = new FileInputStream(f);
+			//size of the file we opened, the service may be replacing it
+			byte[] bytes = new byte[(int) in.getChannel().size()];
+			new DataInputStream(in).readFully(bytes);
+			return bytes;
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to read trending snapshot", e);
+			return null;
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	//no I/O, it can run on TaskExecutors.CPU
+	public static ArrayList<TvShow> decodeSnapshot(byte[] bytes)
+	{
+		try
+		{
+			return EntityCodec.readShowsSnapshot(new DataInputStream(new ByteArrayInputStream(bytes)));
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to decode trending snapshot", e);
+			return null;
+		}
+	}
+
+	@Override
+	protected void onHandleIntent(Intent intent)
+	{
+		ArrayList<TvShow> shows;
+		if(ACTION_PREWARM.equals(intent.getAction()))
+		{
+			shows = getSnapshot(this);
+			if(shows == null)
+				return;
+		}
+		else
+		{
+			if(!Utils.isOnline(this) || !isStale(this))
+				return;
+
+			try
+			{
+				TraktManager tm = TraktManager.getInstance();
+				shows = new ArrayList<TvShow>(tm.fetch(tm.showService().trending()));
+			}
+			catch (Exception e)
+			{
+				Log.e(TAG, "Unable to refresh trending shows", e);
+				return;
+			}
+
+			if(!saveSnapshot(this, shows))
+				return;
+		}
+
+		prewarmPosters(shows);
+	}
+
+	//does disk I/O, don't call it from the ui thread
+	private static boolean saveSnapshot(Context context, List<TvShow> shows)
+	{
+		File f = getSnapshotFile(context);
+		File tmp = new File(f.getPath() + ".tmp");
+
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			EntityCodec.writeShowsSnapshot(out, shows);
+			out.close();
+			out = null;
+			//so a reader never sees a half written file
+			return tmp.renameTo(f);
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, "Unable to write trending snapshot", e);
+			tmp.delete();
+			return false;
+		}
+		finally
+		{
+			close(out);
+		}
+	}
+
+	private void prewarmPosters(List<TvShow> shows)
+	{
+		if(!Utils.isOnline(this))
+			return;
+
+		File cacheDir = AQUtility.getCacheDir(this);
+		for(int i = 0; i < shows.size() && i < PREWARM_COUNT; i++)
+		{
+			TvShow s = shows.get(i);
+			if(s.images == null || s.images.poster == null)
+				continue;
+
+			String url = new Image(s.tvdbId, s.images.poster, Image.POSTER).getUrl();
+			File f = AQUtility.getCacheFile(cacheDir, url);
+			if(f.exists())
+				continue;
+
+			File tmp = new File(f.getPath() + ".tmp");
+			HttpURLConnection connection = null;
+			InputStream in = null;
+			OutputStream out = null;
+			try
+			{
+				connection = (HttpURLConnection) new URL(url).openConnection();
+				connection.setConnectTimeout(CONNECT_TIMEOUT);
+				connection.setReadTimeout(READ_TIMEOUT);
+				if(connection.getResponseCode() != HttpURLConnection.HTTP_OK)
+					throw new IOException("HTTP " + connection.getResponseCode());
+
+				in = connection.getInputStream();
+				out = new BufferedOutputStream(new FileOutputStream(tmp));
+				AQUtility.copy(in, out);
+				out.close();
+				out = null;
+				tmp.renameTo(f);
+			}
+			catch (IOException e)
+			{
+				Log.e(TAG, "Unable to download " + url, e);
+				tmp.delete();
+			}
+			finally
+			{
+				close(in);
+				close(out);
+				if(connection != null)
+					connection.disconnect();
+			}
+		}
+	}
+
+	private static File getSnapshotFile(Context context)
+	{
+		return new File(context.getCacheDir(), SNAPSHOT_FILE);
+	}
+
+	private static void close(Closeable c)
+	{
+		if(c == null)
+			return;
+
+		try
+		{
+			c.close();
+		}
+		catch (IOException e) {}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.sync;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Reschedules the sync after a reboot and starts a batch as soon as
+ * the device is plugged in or connected to wifi
+ */
+public class SyncReceiver extends BroadcastReceiver
+{
+	@Override
+	public void onReceive(Context context, Intent intent)
+	{
+		if(Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction()))
+			SyncScheduler.schedule(context);
+		else if(SyncScheduler.canBatch(context) && SyncScheduler.isBatchDue(context) && !SyncScheduler.isBackingOff(context))
+			context.startService(new Intent(context, SyncService.class));
+	}
+}
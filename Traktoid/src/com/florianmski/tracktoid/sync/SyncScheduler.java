@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.sync;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+
+/**
+ * Decides when SyncService should run.
+ * A cheap activity sync is done periodically, heavier show refreshes are batched
+ * for when the device is charging or on wifi. Failures push the next attempt back exponentially.
+ */
+public class SyncScheduler
+{
+	public final static String PREF_LAST_SYNC = "sync_last";
+	private final static String PREF_LAST_BATCH = "sync_last_batch";
+	private final static String PREF_FAILURES = "sync_failures";
+	private final static String PREF_NEXT_ATTEMPT = "sync_next_attempt";
+
+	//a predefined interval so the system can batch our alarm with others
+	private final static long SYNC_INTERVAL = AlarmManager.INTERVAL_HOUR;
+	//no need to sync again when opening the app if it has been done recently
+	private final static long FRESH_AGE = 15 * 60 * 1000;
+	private final static long BATCH_INTERVAL = 6 * AlarmManager.INTERVAL_HOUR;
+	private final static long BASE_BACKOFF = 5 * 60 * 1000;
+	private final static long MAX_BACKOFF = AlarmManager.INTERVAL_HALF_DAY;
+
+	private final static int REQUEST_PERIODIC = 0;
+	private final static int REQUEST_RETRY = 1;
+
+	public static void schedule(Context context)
+	{
+		//already armed, the process is started often (see SyncReceiver) and arming it again would push it back forever
+		if(getPendingIntent(context, REQUEST_PERIODIC, PendingIntent.FLAG_NO_CREATE) != null)
+			return;
+
+		AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		//non waking, if the device sleeps the sync will happen when it wakes up
+		am.setInexactRepeating(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + SYNC_INTERVAL, SYNC_INTERVAL, getPendingIntent(context, REQUEST_PERIODIC, 0));
+	}
+
+	public static boolean isFresh(Context context)
+	{
+		return System.currentTimeMillis() - getPrefs(context).getLong(PREF_LAST_SYNC, 0) < FRESH_AGE;
+	}
+
+	public static boolean isBackingOff(Context context)
+	{
+		return System.currentTimeMillis() < getPrefs(context).getLong(PREF_NEXT_ATTEMPT, 0);
+	}
+
+	//charging or on wifi, heavy work is ok
+	public static boolean canBatch(Context context)
+	{
+		return isCharging(context) || isOnWifi(context);
+	}
+
+	public static boolean isBatchDue(Context context)
+	{
+		return System.currentTimeMillis() - getPrefs(context).getLong(PREF_LAST_BATCH, 0) > BATCH_INTERVAL;
+	}
+
+	public static void onBatchDone(Context context)
+	{
+		getPrefs(context).edit().putLong(PREF_LAST_BATCH, System.currentTimeMillis()).commit();
+	}
+
+	public static void onSuccess(Context context)
+	{
+		getPrefs(context).edit().remove(PREF_FAILURES).remove(PREF_NEXT_ATTEMPT).commit();
+	}
+
+	public static void onFailure(Context context)
+	{
+		SharedPreferences prefs = getPrefs(context);
+		int failures = prefs.getInt(PREF_FAILURES, 0) + 1;
+		//5min, 10min, 20min... up to 12h
+		long delay = Math.min(BASE_BACKOFF << Math.min(failures - 1, 16), MAX_BACKOFF);
+		long next = System.currentTimeMillis() + delay;
+
+		prefs.edit().putInt(PREF_FAILURES, failures).putLong(PREF_NEXT_ATTEMPT, next).commit();
+
+		AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		am.set(AlarmManager.RTC, next, getPendingIntent(context, REQUEST_RETRY, 0));
+	}
+
+	private static boolean isCharging(Context context)
+	{
+		//sticky broadcast, no receiver needed
+		Intent battery = context.getApplicationContext().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+		return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+	}
+
+	private static boolean isOnWifi(Context context)
+	{
+		ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+		NetworkInfo ni = cm.getActiveNetworkInfo();
+		return ni != null && ni.isConnected() && ni.getType() == ConnectivityManager.TYPE_WIFI;
+	}
+
+	private static PendingIntent getPendingIntent(Context context, int requestCode, int flags)
+	{
+		return PendingIntent.getService(context, requestCode, new Intent(context, SyncService.class), flags);
+	}
+
+	private static SharedPreferences getPrefs(Context context)
+	{
+		return PreferenceManager.getDefaultSharedPreferences(context);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.sync;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.util.Log;
+
+import com.florianmski.tracktoid.Utils;
+import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.trakt.ShowChange;
+import com.florianmski.tracktoid.trakt.TraktManager;
+import com.jakewharton.trakt.entities.TvShow;
+
+/**
+ * Background Trakt -> Traktoid sync, see SyncScheduler for when it runs
+ */
+public class SyncService extends IntentService
+{
+	private static final String TAG = "SyncService";
+
+	//shows not refreshed for this long are refreshed during a batch
+	private final static long STALE_AGE = 3 * 24 * 60 * 60 * 1000L;
+	//don't download the whole library at once
+	private final static int MAX_REFRESH_BY_BATCH = 10;
+
+	public SyncService()
+	{
+		super(TAG);
+	}
+
+	@Override
+	protected void onHandleIntent(Intent intent)
+	{
+		TraktManager tm = TraktManager.getInstance();
+
+		if(tm == null || !Utils.isOnline(this) || SyncScheduler.isBackingOff(this))
+			return;
+
+		boolean batch = SyncScheduler.canBatch(this) && SyncScheduler.isBatchDue(this);
+
+		//nothing to do
+		if(!batch && SyncScheduler.isFresh(this))
+			return;
+
+		try
+		{
+			Synchronizer synchronizer = new Synchronizer(tm, this);
+			synchronizer.syncActivities();
+			notifyUpdated(tm, synchronizer.getChanges());
+
+			//a refresh from the ui is already writing these shows
+			if(tm.isUpdateTaskRunning())
+				batch = false;
+
+			//tvdb ids, shows are compared by title and two shows may have the same
+			Set<String> toRefresh = new LinkedHashSet<String>();
+			addIds(toRefresh, synchronizer.getShowsToRefresh());
+			if(batch)
+			{
+				DatabaseWrapper dbw = new DatabaseWrapper(this);
+				dbw.open();
+				//older versions could leave seasons and episodes behind when removing a show
+				int orphans = dbw.removeOrphans();
+				if(orphans > 0)
+					Log.i(TAG, "Removed " + orphans + " orphan rows");
+				addIds(toRefresh, dbw.getStaleShows(System.currentTimeMillis() - STALE_AGE, MAX_REFRESH_BY_BATCH));
+				dbw.close();
+			}
+
+			//shows unknown to the db are always refreshed, they are few and the user is expecting them
+			List<ShowChange> refreshed = new ArrayList<ShowChange>();
+			for(String tvdbId : toRefresh)
+			{
+				ShowChange change = synchronizer.refreshShow(tvdbId);
+				if(change != null)
+					refreshed.add(change);
+			}
+			notifyUpdated(tm, refreshed);
+
+			if(batch)
+				SyncScheduler.onBatchDone(this);
+			SyncScheduler.onSuccess(this);
+		}
+		catch (Exception e)
+		{
+			Log.e(TAG, "Sync failed", e);
+			SyncScheduler.onFailure(this);
+		}
+	}
+
+	//the ChangeBus delivers them on the main thread
+	private void notifyUpdated(TraktManager tm, List<ShowChange> changes)
+	{
+		for(ShowChange change : changes)
+			tm.onShowUpdated(change);
+	}
+
+	private static void addIds(Set<String> ids, List<TvShow> shows)
+	{
+		for(TvShow s : shows)
+			ids.add(s.tvdbId);
+	}
+}
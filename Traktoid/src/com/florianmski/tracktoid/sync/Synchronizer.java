@@ -0,0 +1,270 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.sync;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.trakt.ShowChange;
+import com.florianmski.tracktoid.trakt.TraktClock;
+import com.florianmski.tracktoid.trakt.TraktManager;
+import com.jakewharton.trakt.entities.Activity;
+import com.jakewharton.trakt.entities.ActivityItemBase;
+import com.jakewharton.trakt.entities.TvShow;
+import com.jakewharton.trakt.entities.TvShowEpisode;
+import com.jakewharton.trakt.entities.TvShowSeason;
+import com.jakewharton.trakt.enumerations.ActivityAction;
+import com.jakewharton.trakt.enumerations.ActivityType;
+
+/**
+ * Trakt -> db synchronization, without any ui.
+ * Used by ActivityTask when the app is opened and by SyncService in the background.
+ * Everything here is blocking, don't call it from the ui thread.
+ */
+public class Synchronizer
+{
+	//newest activity timestamp applied to the db, as given by trakt (in seconds)
+	private final static String PREF_CURSOR = "activity_cursor";
+	private final static String PREF_LEGACY_TIMESTAMP = "activity_timestamp";
+
+	private TraktManager tm;
+	private Context context;
+	private SharedPreferences prefs;
+	private DatabaseWrapper dbw;
+
+	//shows we'll have to refresh (ex: show or an episode of a show which is not in the db)
+	//by tvdb id, shows are compared by title and two shows may have the same
+	private Map<String, TvShow> refreshList = new LinkedHashMap<String, TvShow>();
+	//changes made by the last syncActivities()
+	private List<ShowChange> changes = new ArrayList<ShowChange>();
+
+	public Synchronizer(TraktManager tm, Context context)
+	{
+		this.tm = tm;
+		this.context = context;
+		this.prefs = PreferenceManager.getDefaultSharedPreferences(context);
+	}
+
+	/**
+	 * Apply the user's activity since the last sync to the db.
+	 * Everything is applied in one transaction and only sets values (watched, rating),
+	 * so replaying activities after a crash is harmless.
+	 * A watched value changed locally after the activity happened is kept.
+	 * The cursor only moves forward, after the transaction is committed.
+	 */
+	public void syncActivities()
+	{
+		long cursor = getCursor();
+
+		long sentAt = System.currentTimeMillis();
+		Activity activities = tm.fetch(
+				tm
+				.activityService()
+				.user(TraktManager.getUsername())
+				.timestamp(cursor)
+				.types(ActivityType.Episode, ActivityType.Show)
+				.actions(ActivityAction.Checkin, ActivityAction.Rating, ActivityAction.Scrobble, ActivityAction.Seen));
+
+		//local marks are stamped in trakt time, keep our idea of it up to date
+		if(activities != null && activities.timestamps != null && activities.timestamps.current != null)
+			TraktClock.onTraktTime(context, toSeconds(activities.timestamps.current) * 1000, sentAt, System.currentTimeMillis());
+
+		long newCursor = cursor;
+
+		if(activities != null && activities.activity != null && !activities.activity.isEmpty())
+		{
+			//oldest first, so the last rating wins (on a copy, another sync may be reading the same result)
+			List<ActivityItemBase> items = new ArrayList<ActivityItemBase>(activities.activity);
+			Collections.reverse(items);
+
+			//shows touched by this sync (and their seasons), their progress has to be recomputed once
+			Map<String, Set<Integer>> dirtyShows = new HashMap<String, Set<Integer>>();
+
+			dbw = new DatabaseWrapper(context);
+			dbw.open();
+			try
+			{
+				dbw.beginTransaction();
+				try
+				{
+					for(ActivityItemBase activity : items)
+					{
+						long time = toSeconds(activity.timestamp);
+						newCursor = Math.max(newCursor, time);
+
+						switch(activity.type)
+						{
+						case Episode :
+							switch(activity.action)
+							{
+							case Checkin :
+							case Scrobble :
+								markAsWatched(activity.show, activity.episode, time, dirtyShows);
+								break;
+							case Seen :
+								for(TvShowEpisode episode : activity.episodes)
+									markAsWatched(activity.show, episode, time, dirtyShows);
+								break;
+							}
+							break;
+						case Show :
+							switch(activity.action)
+							{
+							case Rating :
+								if(dbw.setShowRating(activity.show.tvdbId, activity.rating))
+									getDirtySeasons(dirtyShows, activity.show.tvdbId);
+								else
+									refreshList.put(activity.show.tvdbId, activity.show);
+								break;
+							}
+							break;
+						}
+					}
+
+					for(String tvdbId : dirtyShows.keySet())
+						dbw.refreshPercentage(tvdbId);
+
+					dbw.setTransactionSuccessful();
+				}
+				finally
+				{
+					dbw.endTransaction();
+				}
+
+				for(Map.Entry<String, Set<Integer>> dirty : dirtyShows.entrySet())
+				{
+					ShowChange change = ShowChange.load(dbw, dirty.getKey(), dirty.getValue());
+					if(change != null)
+						changes.add(change);
+				}
+			}
+			finally
+			{
+				dbw.close();
+			}
+		}
+
+		//trakt returns activities from the cursor included, the newest one will be replayed next time
+		//which is fine as applying it twice changes nothing
+		prefs.edit()
+		.putLong(PREF_CURSOR, newCursor)
+		.remove(PREF_LEGACY_TIMESTAMP)
+		.putLong(SyncScheduler.PREF_LAST_SYNC, System.currentTimeMillis())
+		.commit();
+	}
+
+	private long getCursor()
+	{
+		//the old timestamp was computed on the device and shifted to PST, it is a bit early
+		//but that only means some activities are replayed once
+		if(!prefs.contains(PREF_CURSOR))
+			return prefs.getLong(PREF_LEGACY_TIMESTAMP, 0);
+		return prefs.getLong(PREF_CURSOR, 0);
+	}
+
+	//the cursor and trakt timestamps are in seconds
+	private static long toSeconds(Calendar timestamp)
+	{
+		return timestamp == null ? 0 : timestamp.getTimeInMillis() / 1000;
+	}
+
+	/**
+	 * Download everything about a show and store it in the db
+	 * @return what changed, which may be anything (null if the show is gone)
+	 */
+	public ShowChange refreshShow(String tvdbId)
+	{
+		//local changes made after this point win over what trakt is about to send
+		long fetchedAt = TraktClock.now(context);
+		TvShow s = tm.fetch(tm.showService().summary(tvdbId).extended());
+
+		dbw = new DatabaseWrapper(context);
+		dbw.open();
+		try
+		{
+			//nobody must see (or keep after a crash) a show with only part of its seasons
+			dbw.beginTransaction();
+			try
+			{
+				dbw.insertOrUpdateShow(s);
+				dbw.insertOrUpdateSeasons(s.seasons, s.tvdbId);
+				for(TvShowSeason season : s.seasons)
+					dbw.insertOrUpdateEpisodes(season.episodes.episodes, season.url, fetchedAt);
+				dbw.refreshSearchIndex(s.tvdbId);
+
+				dbw.refreshPercentage(s.tvdbId);
+				dbw.setLastRefresh(s.tvdbId, System.currentTimeMillis());
+				dbw.setTransactionSuccessful();
+			}
+			finally
+			{
+				dbw.endTransaction();
+			}
+
+			return ShowChange.load(dbw, s.tvdbId, null);
+		}
+		finally
+		{
+			dbw.close();
+		}
+	}
+
+	//shows updated by the last syncActivities()
+	public List<ShowChange> getChanges()
+	{
+		return changes;
+	}
+
+	//shows syncActivities() found but which are not (entirely) in the db
+	public ArrayList<TvShow> getShowsToRefresh()
+	{
+		return new ArrayList<TvShow>(refreshList.values());
+	}
+
+	private void markAsWatched(TvShow show, TvShowEpisode episode, long time, Map<String, Set<Integer>> dirtyShows)
+	{
+		//this episode is in the db (but it may have been changed locally since)
+		if(dbw.markEpisodeAsWatched(true, time * 1000, show.tvdbId, episode.season, episode.number))
+			getDirtySeasons(dirtyShows, show.tvdbId).add(episode.season);
+		//we'll have to download it
+		else
+			refreshList.put(show.tvdbId, show);
+	}
+
+	private static Set<Integer> getDirtySeasons(Map<String, Set<Integer>> dirtyShows, String tvdbId)
+	{
+		Set<Integer> seasons = dirtyShows.get(tvdbId);
+		if(seasons == null)
+		{
+			seasons = new HashSet<Integer>();
+			dirtyShows.put(tvdbId, seasons);
+		}
+		return seasons;
+	}
+}
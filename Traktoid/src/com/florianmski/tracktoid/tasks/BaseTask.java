@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.tasks;
+
+import java.util.concurrent.Executor;
+
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * AsyncTask running on one of the TaskExecutors, start it with launch() and not execute()
+ * (execute() uses the serial executor shared by every AsyncTask on honeycomb+).
+ */
+public abstract class BaseTask<Params, Progress, Result> extends AsyncTask<Params, Progress, Result>
+{
+	private long launchedAt = 0;
+
+	//where this task runs
+	protected Executor getExecutor()
+	{
+		return TaskExecutors.DISK;
+	}
+
+	public void launch(Params... params)
+	{
+		launchedAt = SystemClock.uptimeMillis();
+
+		//before honeycomb AsyncTasks already run on a pool
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+			executeOnExecutor(getExecutor(), params);
+		else
+			execute(params);
+	}
+
+	@Override
+	protected final Result doInBackground(Params... params)
+	{
+		long start = SystemClock.uptimeMillis();
+		try
+		{
+			return runInBackground(params);
+		}
+		finally
+		{
+			long queued = launchedAt == 0 ? 0 : start - launchedAt;
+			TaskExecutors.record(getClass().getName(), queued, SystemClock.uptimeMillis() - start);
+		}
+	}
+
+	protected abstract Result runInBackground(Params... params);
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Background threads of the app, one pool by kind of work so a slow network call
+ * never delays a db read.
+ * Tasks report how long they waited in their queue and how long they ran, totals are kept
+ * by type of task (logged at debug level).
+ */
+public class TaskExecutors
+{
+	private static final String TAG = "TaskExecutors";
+
+	//past this many waiting tasks the caller runs the task itself, which slows it down
+	//instead of letting the queue grow forever
+	private static final int QUEUE_SIZE = 128;
+
+	//the db is locked for writes anyway, more threads would only wait
+	public static final Executor DISK = create("disk", 2);
+	public static final Executor NETWORK = create("network", 4);
+	//decoding and other pure computation, no I/O here
+	public static final Executor CPU = create("cpu", Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 2)));
+
+	private static final Map<String, Stats> stats = new HashMap<String, Stats>();
+
+	private static Executor create(final String name, int threads)
+	{
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory()
+		{
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(final Runnable r)
+			{
+				return new Thread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						//don't compete with the ui thread
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						r.run();
+					}
+				}, "traktoid-" + name + "-" + (++count));
+			}
+		}, new ThreadPoolExecutor.CallerRunsPolicy()
+		{
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor e)
+			{
+				Log.w(TAG, "The " + name + " queue is full, running a task on " + Thread.currentThread().getName());
+				super.rejectedExecution(r, e);
+			}
+		});
+	}
+
+	/**
+	 * @param type name of the task (its class)
+	 * @param queued time spent waiting for a thread, in ms
+	 * @param ran time spent running, in ms
+	 */
+	public static void record(String type, long queued, long ran)
+	{
+		boolean log = Log.isLoggable(TAG, Log.DEBUG);
+		String totals = null;
+		synchronized(stats)
+		{
+			Stats s = stats.get(type);
+			if(s == null)
+			{
+				s = new Stats();
+				stats.put(type, s);
+			}
+			s.add(queued, ran);
+			if(log)
+				totals = s.toString();
+		}
+
+		if(log)
+			Log.d(TAG, type + " queued " + queued + "ms, ran " + ran + "ms (" + totals + ")");
+	}
+
+	//copy of the totals by type of task
+	public static Map<String, Stats> getStats()
+	{
+		Map<String, Stats> copy = new HashMap<String, Stats>();
+		synchronized(stats)
+		{
+			for(Map.Entry<String, Stats> e : stats.entrySet())
+				copy.put(e.getKey(), e.getValue().copy());
+		}
+		return copy;
+	}
+
+	public static class Stats
+	{
+		public int count;
+		public long totalQueued;
+		public long maxQueued;
+		public long totalRan;
+		public long maxRan;
+
+		private void add(long queued, long ran)
+		{
+			count++;
+			totalQueued += queued;
+			maxQueued = Math.max(maxQueued, queued);
+			totalRan += ran;
+			maxRan = Math.max(maxRan, ran);
+		}
+
+		private Stats copy()
+		{
+			Stats s = new Stats();
+			s.count = count;
+			s.totalQueued = totalQueued;
+			s.maxQueued = maxQueued;
+			s.totalRan = totalRan;
+			s.maxRan = maxRan;
+			return s;
+		}
+
+		@Override
+		public String toString()
+		{
+			return count + " runs, queued " + (totalQueued / count) + "ms avg " + maxQueued + "ms max, ran " + (totalRan / count) + "ms avg " + maxRan + "ms max";
+		}
+	}
+}
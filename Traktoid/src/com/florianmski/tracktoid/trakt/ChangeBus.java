@@ -0,0 +1,225 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.florianmski.tracktoid.trakt.TraktManager.TraktListener;
+import com.jakewharton.trakt.entities.TvShow;
+
+/**
+ * Show changes, delivered to the listeners subscribed to their topics.
+ * Changes can be posted from any thread, they are delivered on the ui thread
+ * at most once every MIN_INTERVAL ms, several changes of the same show in between are merged.
+ * Listeners are weakly referenced, a forgotten unsubscribe doesn't leak a fragment.
+ */
+public class ChangeBus
+{
+	private final static long MIN_INTERVAL = 250;
+
+	//any show (row of the tvshows table)
+	public final static String TOPIC_SHOWS = "tvshows";
+	//any show whose seasons or episodes changed
+	public final static String TOPIC_EPISODES = "episodes";
+
+	private static ChangeBus instance;
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+	private final Map<String, List<WeakReference<TraktListener>>> subscribers = new HashMap<String, List<WeakReference<TraktListener>>>();
+
+	//pending changes by tvdb id, in posting order
+	private LinkedHashMap<String, ShowChange> updated = new LinkedHashMap<String, ShowChange>();
+	private LinkedHashMap<String, TvShow> removed = new LinkedHashMap<String, TvShow>();
+	private boolean scheduled = false;
+	private long lastDelivery = 0;
+
+	private final Runnable deliver = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			flush();
+		}
+	};
+
+	public static synchronized ChangeBus getInstance()
+	{
+		if(instance == null)
+			instance = new ChangeBus();
+		return instance;
+	}
+
+	private ChangeBus() {}
+
+	//topic of a single show
+	public static String showTopic(String tvdbId)
+	{
+		return "tvshow/" + tvdbId;
+	}
+
+	public synchronized void subscribe(String topic, TraktListener listener)
+	{
+		List<WeakReference<TraktListener>> list = subscribers.get(topic);
+		if(list == null)
+		{
+			list = new ArrayList<WeakReference<TraktListener>>();
+			subscribers.put(topic, list);
+		}
+
+		for(Iterator<WeakReference<TraktListener>> it = list.iterator(); it.hasNext();)
+		{
+			TraktListener l = it.next().get();
+			if(l == null)
+				it.remove();
+			else if(l == listener)
+				return;
+		}
+
+		list.add(new WeakReference<TraktListener>(listener));
+	}
+
+	public synchronized void unsubscribe(String topic, TraktListener listener)
+	{
+		List<WeakReference<TraktListener>> list = subscribers.get(topic);
+		if(list == null)
+			return;
+
+		for(Iterator<WeakReference<TraktListener>> it = list.iterator(); it.hasNext();)
+		{
+			TraktListener l = it.next().get();
+			if(l == null || l == listener)
+				it.remove();
+		}
+
+		if(list.isEmpty())
+			subscribers.remove(topic);
+	}
+
+	public synchronized void unsubscribeAll(TraktListener listener)
+	{
+		for(String topic : new ArrayList<String>(subscribers.keySet()))
+			unsubscribe(topic, listener);
+	}
+
+	public synchronized void postUpdated(ShowChange change)
+	{
+		String tvdbId = change.getTvdbId();
+		removed.remove(tvdbId);
+
+		ShowChange previous = updated.remove(tvdbId);
+		updated.put(tvdbId, previous == null ? change : ShowChange.merge(previous, change));
+
+		schedule();
+	}
+
+	public synchronized void postRemoved(TvShow show)
+	{
+		//nobody cares about updates of a show which is not there anymore
+		updated.remove(show.tvdbId);
+		removed.put(show.tvdbId, show);
+
+		schedule();
+	}
+
+	private void schedule()
+	{
+		if(!scheduled)
+		{
+			scheduled = true;
+			long delay = Math.max(0, lastDelivery + MIN_INTERVAL - SystemClock.uptimeMillis());
+			handler.postDelayed(deliver, delay);
+		}
+	}
+
+	//ui thread
+	private void flush()
+	{
+		List<ShowChange> changes;
+		List<TvShow> shows;
+		Map<ShowChange, List<TraktListener>> updateTargets = new LinkedHashMap<ShowChange, List<TraktListener>>();
+		Map<TvShow, List<TraktListener>> removeTargets = new LinkedHashMap<TvShow, List<TraktListener>>();
+
+		synchronized(this)
+		{
+			changes = new ArrayList<ShowChange>(updated.values());
+			shows = new ArrayList<TvShow>(removed.values());
+			updated.clear();
+			removed.clear();
+			scheduled = false;
+			lastDelivery = SystemClock.uptimeMillis();
+
+			//resolve listeners now, they may (un)subscribe while being called
+			for(ShowChange change : changes)
+			{
+				List<TraktListener> targets = new ArrayList<TraktListener>();
+				collect(TOPIC_SHOWS, targets);
+				collect(showTopic(change.getTvdbId()), targets);
+				if(change.hasSeasonsChanged())
+					collect(TOPIC_EPISODES, targets);
+				updateTargets.put(change, targets);
+			}
+
+			for(TvShow show : shows)
+			{
+				List<TraktListener> targets = new ArrayList<TraktListener>();
+				collect(TOPIC_SHOWS, targets);
+				collect(showTopic(show.tvdbId), targets);
+				collect(TOPIC_EPISODES, targets);
+				removeTargets.put(show, targets);
+			}
+		}
+
+		for(Map.Entry<ShowChange, List<TraktListener>> e : updateTargets.entrySet())
+		{
+			for(TraktListener l : e.getValue())
+				l.onShowUpdated(e.getKey());
+		}
+
+		for(Map.Entry<TvShow, List<TraktListener>> e : removeTargets.entrySet())
+		{
+			for(TraktListener l : e.getValue())
+				l.onShowRemoved(e.getKey());
+		}
+	}
+
+	//add the live listeners of this topic (once)
+	private void collect(String topic, List<TraktListener> targets)
+	{
+		List<WeakReference<TraktListener>> list = subscribers.get(topic);
+		if(list == null)
+			return;
+
+		for(Iterator<WeakReference<TraktListener>> it = list.iterator(); it.hasNext();)
+		{
+			TraktListener l = it.next().get();
+			if(l == null)
+				it.remove();
+			else if(!targets.contains(l))
+				targets.add(l);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.florianmski.tracktoid.trakt;
+
+import android.os.SystemClock;
+
+/**
+ * Stops sending requests to a part of the api which keeps failing.
+ * After a given number of failures in a row it opens: requests are refused right away.
+ * Once the open time is over, one request is let through to test the api,
+ * it closes the breaker if it succeeds, otherwise the breaker stays open for another open time.
+ */
+public class CircuitBreaker
+{
+	private final int threshold;
+	private final long openTime;
+
+	private int failures = 0;
+	private long openUntil = 0;
+	//a request is testing the api
+	private boolean testing = false;
+
+	public CircuitBreaker(int threshold, long openTime)
+	{
+		this.threshold = threshold;
+		this.openTime = openTime;
+	}
+
+	/**
+	 * @return true if the request can be sent, it must then report its outcome with onSuccess(), onFailure() or onCancel()
+	 */
+	public synchronized boolean allow()
+	{
+		if(failures < threshold)
+			return true;
+
+		if(testing || SystemClock.elapsedRealtime() < openUntil)
+			return false;
+
+		testing = true;
+		return true;
+	}
+
+	public synchronized void onSuccess()
+	{
+		failures = 0;
+		testing = false;
+	}
+
+	//the request let through by allow() was finally not sent
+	public synchronized void onCancel()
+	{
+		testing = false;
+	}
+
+	public synchronized void onFailure()
+	{
+		failures++;
+		testing = false;
+
+		if(failures >= threshold)
+			openUntil = SystemClock.elapsedRealtime() + openTime;
+	}
+}
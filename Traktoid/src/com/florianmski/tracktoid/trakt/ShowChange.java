@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.Library;
+import com.jakewharton.trakt.entities.TvShow;
+import com.jakewharton.trakt.entities.TvShowSeason;
+
+/**
+ * What changed in a show, sent to the TraktListeners.
+ * It only holds the show row and the seasons counts, listeners needing
+ * the episodes load them from the db themselves.
+ */
+public class ShowChange
+{
+	//the show as stored in the db (progress, counts...), without its seasons
+	public final TvShow show;
+	//seasons with their counts but without their episodes (ordered by season), null if no season changed
+	public final List<TvShowSeason> seasons;
+	//numbers of the seasons which changed, null if we don't know (all of them may have)
+	private final Set<Integer> changedSeasons;
+
+	public ShowChange(TvShow show, List<TvShowSeason> seasons, Set<Integer> changedSeasons)
+	{
+		this.show = show;
+		this.seasons = seasons;
+		this.changedSeasons = changedSeasons;
+	}
+
+	/**
+	 * Read the change of a show from the db
+	 * @param changedSeasons seasons which changed, null if all of them may have
+	 * @return null if the show is not in the db (anymore)
+	 */
+	public static ShowChange load(DatabaseWrapper dbw, String tvdbId, Set<Integer> changedSeasons)
+	{
+		TvShow show = dbw.getShow(tvdbId);
+		if(show == null)
+			return null;
+
+		Library.put(show);
+		List<TvShowSeason> seasons = (changedSeasons != null && changedSeasons.isEmpty()) ? null : dbw.getSeasons(tvdbId, false, true);
+		return new ShowChange(show, seasons, changedSeasons);
+	}
+
+	/**
+	 * One change equivalent to older then newer (same show)
+	 */
+	public static ShowChange merge(ShowChange older, ShowChange newer)
+	{
+		//seasons didn't change since older, its counts are still right
+		if(newer.seasons == null)
+			return new ShowChange(newer.show, older.seasons, older.changedSeasons);
+		if(older.seasons == null)
+			return newer;
+
+		Set<Integer> changedSeasons = null;
+		if(older.changedSeasons != null && newer.changedSeasons != null)
+		{
+			changedSeasons = new HashSet<Integer>(older.changedSeasons);
+			changedSeasons.addAll(newer.changedSeasons);
+		}
+
+		return new ShowChange(newer.show, newer.seasons, changedSeasons);
+	}
+
+	public String getTvdbId()
+	{
+		return show.tvdbId;
+	}
+
+	public boolean hasSeasonsChanged()
+	{
+		return seasons != null;
+	}
+
+	public boolean isSeasonChanged(int season)
+	{
+		return seasons != null && (changedSeasons == null || changedSeasons.contains(season));
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.jakewharton.trakt.TraktApiBuilder;
+
+/**
+ * Identical requests made at the same time (same url) share a single call to trakt:
+ * the first caller does it, the others wait for its result (or its exception).
+ * Only for reads, a post is keyed by its url but its parameters are in the body.
+ * Lists are copied for each caller, the entities in them are shared.
+ */
+public class SingleFlight
+{
+	private final TraktRequests requests;
+	private final Map<String, Call> calls = new HashMap<String, Call>();
+
+	public SingleFlight(TraktRequests requests)
+	{
+		this.requests = requests;
+	}
+
+	public <T> T fire(TraktApiBuilder<T> builder)
+	{
+		//ApiBuilder.toString() is the url of the request, api key and parameters included
+		return fire(builder.toString(), TraktRequests.wrap(builder));
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> T fire(String key, TraktRequests.Request<T> request)
+	{
+		Call call;
+		boolean owner = false;
+		synchronized(calls)
+		{
+			call = calls.get(key);
+			if(call == null)
+			{
+				call = new Call();
+				calls.put(key, call);
+				owner = true;
+			}
+		}
+
+		if(owner)
+		{
+			try
+			{
+				call.result = requests.get(key, request);
+			}
+			catch(RuntimeException e)
+			{
+				call.error = e;
+			}
+			finally
+			{
+				//from now on the same request will hit trakt again
+				synchronized(calls)
+				{
+					calls.remove(key);
+				}
+				call.done.countDown();
+			}
+		}
+		else
+			await(call);
+
+		if(call.error != null)
+			throw call.error;
+
+		return (T) copy(call.result);
+	}
+
+	//the call is made anyway, a cancelled task just ignores its result
+	private void await(Call call)
+	{
+		boolean interrupted = false;
+		while(true)
+		{
+			try
+			{
+				call.done.await();
+				break;
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	//callers sort or filter their lists
+	private Object copy(Object result)
+	{
+		if(result instanceof List)
+			return new ArrayList<Object>((List<?>) result);
+		return result;
+	}
+
+	private static class Call
+	{
+		private final CountDownLatch done = new CountDownLatch(1);
+		private Object result;
+		private RuntimeException error;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.SystemClock;
+
+/**
+ * Small in-memory cache whose entries expire after a fixed time.
+ * Meant to be used from the ui thread only.
+ */
+public class TimedCache<K, V>
+{
+	private final long ttl;
+	private final Map<K, Entry<V>> entries = new HashMap<K, Entry<V>>();
+
+	public TimedCache(long ttl)
+	{
+		this.ttl = ttl;
+	}
+
+	public V get(K key)
+	{
+		Entry<V> e = entries.get(key);
+		if(e == null)
+			return null;
+
+		if(SystemClock.elapsedRealtime() - e.time > ttl)
+		{
+			entries.remove(key);
+			return null;
+		}
+
+		return e.value;
+	}
+
+	public boolean contains(K key)
+	{
+		return get(key) != null;
+	}
+
+	public void put(K key, V value)
+	{
+		entries.put(key, new Entry<V>(value, SystemClock.elapsedRealtime()));
+	}
+
+	public void remove(K key)
+	{
+		entries.remove(key);
+	}
+
+	//values still alive, expired ones are dropped on the way
+	public List<V> values()
+	{
+		List<V> values = new ArrayList<V>();
+		for(K key : new ArrayList<K>(entries.keySet()))
+		{
+			V v = get(key);
+			if(v != null)
+				values.add(v);
+		}
+		return values;
+	}
+
+	public void clear()
+	{
+		entries.clear();
+	}
+
+	private static class Entry<V>
+	{
+		private final V value;
+		private final long time;
+
+		private Entry(V value, long time)
+		{
+			this.value = value;
+			this.time = time;
+		}
+	}
+}
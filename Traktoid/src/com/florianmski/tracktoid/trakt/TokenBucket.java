@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.florianmski.tracktoid.trakt;
+
+import android.os.SystemClock;
+
+/**
+ * Token bucket limiting the number of requests sent to trakt.
+ * Its rate adapts: it's halved each time trakt struggles (slowDown()) 
+ * and goes slowly back up with each successful request (speedUp()).
+ */
+public class TokenBucket
+{
+	private final double capacity;
+	private final double maxRate;
+	private final double minRate;
+
+	//tokens by second
+	private double rate;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param capacity max number of requests sent in a burst
+	 * @param maxRate max number of requests by second
+	 * @param minRate rate when trakt struggles the most
+	 */
+	public TokenBucket(int capacity, double maxRate, double minRate)
+	{
+		this.capacity = capacity;
+		this.maxRate = maxRate;
+		this.minRate = minRate;
+		this.rate = maxRate;
+		this.tokens = capacity;
+		this.lastRefill = SystemClock.elapsedRealtime();
+	}
+
+	/**
+	 * Block until we are allowed to send a request
+	 * @throws InterruptedException if the thread is interrupted while waiting, no token is taken then
+	 */
+	public void acquire() throws InterruptedException
+	{
+		while(true)
+		{
+			long wait;
+			synchronized(this)
+			{
+				refill();
+				if(tokens >= 1)
+				{
+					tokens--;
+					return;
+				}
+				wait = (long) Math.ceil((1 - tokens) * 1000 / rate);
+			}
+			Thread.sleep(wait);
+		}
+	}
+
+	//same as acquire() but an interrupt is only kept for later (for requests shared by several callers)
+	public void acquireUninterruptibly()
+	{
+		boolean interrupted = false;
+		while(true)
+		{
+			try
+			{
+				acquire();
+				break;
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	public synchronized void slowDown()
+	{
+		refill();
+		rate = Math.max(minRate, rate / 2);
+	}
+
+	public synchronized void speedUp()
+	{
+		refill();
+		rate = Math.min(maxRate, rate + maxRate / 20);
+	}
+
+	private void refill()
+	{
+		long now = SystemClock.elapsedRealtime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1000);
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * Trakt time as seen from the device.
+ * Watched values are stamped with it, activities come with trakt timestamps and comparing them
+ * with the device clock would let a device with a wrong clock win (or lose) every merge.
+ * The offset between both clocks is measured at each activity sync.
+ */
+public class TraktClock
+{
+	//trakt time - device time, in ms
+	private final static String PREF_OFFSET = "trakt_clock_offset";
+
+	private static volatile Long offset = null;
+
+	//trakt time now, the device time until we have synced once
+	public static long now(Context context)
+	{
+		return System.currentTimeMillis() + getOffset(context);
+	}
+
+	/**
+	 * @param traktTime time trakt gave in its response
+	 * @param sentAt device time when the request was sent
+	 * @param receivedAt device time when the response was received
+	 */
+	public static void onTraktTime(Context context, long traktTime, long sentAt, long receivedAt)
+	{
+		//trakt answered somewhere in between, it's usually a matter of seconds
+		long value = traktTime - (sentAt + (receivedAt - sentAt) / 2);
+		offset = value;
+		getPrefs(context).edit().putLong(PREF_OFFSET, value).commit();
+	}
+
+	private static long getOffset(Context context)
+	{
+		Long value = offset;
+		if(value == null)
+		{
+			value = getPrefs(context).getLong(PREF_OFFSET, 0);
+			offset = value;
+		}
+		return value;
+	}
+
+	private static SharedPreferences getPrefs(Context context)
+	{
+		return PreferenceManager.getDefaultSharedPreferences(context);
+	}
+}
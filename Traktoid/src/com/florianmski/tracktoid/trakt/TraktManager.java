@@ -17,6 +17,9 @@
 package com.florianmski.tracktoid.trakt;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -29,6 +32,7 @@ import com.florianmski.tracktoid.Utils;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.florianmski.tracktoid.trakt.tasks.get.UpdateShowsTask;
 import com.jakewharton.trakt.ServiceManager;
+import com.jakewharton.trakt.TraktApiBuilder;
 import com.jakewharton.trakt.entities.TvShow;
 
 public class TraktManager extends ServiceManager implements OnSharedPreferenceChangeListener
@@ -39,8 +43,13 @@ public class TraktManager extends ServiceManager implements OnSharedPreferenceCh
 	private static String password;
 
 	private static ArrayList<TraktTask> tasks;
-	private static ArrayList<TraktListener> listeners;
+	//read from background threads (sync service), tasks is only touched from the ui thread
+	private static volatile boolean updateTaskRunning = false;
+	//listeners of the requests, show changes go through the ChangeBus
+	private static Map<TraktListener, Boolean> listeners;
 	private Context context;
+	private final TraktRequests requests = new TraktRequests();
+	private final SingleFlight singleFlight = new SingleFlight(requests);
 
 	public static synchronized TraktManager getInstance()
 	{	
@@ -62,7 +71,7 @@ public class TraktManager extends ServiceManager implements OnSharedPreferenceCh
 	{
 		traktManager = new TraktManager(context);
 		tasks = new ArrayList<TraktTask>();
-		listeners = new ArrayList<TraktListener>();
+		listeners = Collections.synchronizedMap(new WeakHashMap<TraktListener, Boolean>());
 	}
 
 	public void setAccountInformations(Context context)
@@ -101,19 +110,36 @@ public class TraktManager extends ServiceManager implements OnSharedPreferenceCh
 		setAuthentication(username, password);
 	}
 
+	/**
+	 * Fire a read (GET) request, identical requests running at the same time share one call to trakt
+	 */
+	public <T> T fetch(TraktApiBuilder<T> builder)
+	{
+		return singleFlight.fire(builder);
+	}
+
+	/**
+	 * Fire a request which changes something on trakt (or has its parameters in its body), it's not retried
+	 */
+	public <T> T send(TraktApiBuilder<T> builder)
+	{
+		return requests.send(builder);
+	}
+
 	public void addObserver(TraktListener listener)
 	{
-		listeners.add(listener);
+		listeners.put(listener, Boolean.TRUE);
 	}
 
 	public void removeObserver(TraktListener listener)
 	{
 		listeners.remove(listener);
+		ChangeBus.getInstance().unsubscribeAll(listener);
 	}
 
 	public void onBeforeTraktRequest(TraktListener listener)
 	{
-		if(listeners.contains(listener))
+		if(listeners.containsKey(listener))
 			listener.onBeforeTraktRequest();
 	}
 
@@ -134,29 +160,29 @@ public class TraktManager extends ServiceManager implements OnSharedPreferenceCh
 			tasks.remove(0);
 
 			if(!tasks.isEmpty())
-				tasks.get(0).inQueue().execute();
+				tasks.get(0).inQueue().launch();
+			onQueueChanged();
 		}
 
-		if(listeners.contains(listener))
+		if(listeners.containsKey(listener))
 			listener.onAfterTraktRequest(success);
 	}
 
 	public void onErrorTraktRequest(TraktListener listener, Exception e)
 	{
-		if(listeners.contains(listener))
+		if(listeners.containsKey(listener))
 			listener.onErrorTraktRequest(e);
 	}
 
-	public void onShowUpdated(TvShow show)
+	//can be called from any thread, listeners are called later on the ui thread
+	public void onShowUpdated(ShowChange change)
 	{
-		for(TraktListener l : listeners)
-			l.onShowUpdated(show);
+		ChangeBus.getInstance().postUpdated(change);
 	}
 
 	public void onShowRemoved(TvShow show)
 	{
-		for(TraktListener l : listeners)
-			l.onShowRemoved(show);
+		ChangeBus.getInstance().postRemoved(show);
 	}
 
 	public interface TraktListener
@@ -164,7 +190,7 @@ public class TraktManager extends ServiceManager implements OnSharedPreferenceCh
 		public void onBeforeTraktRequest();
 		public void onAfterTraktRequest(boolean success);
 		public void onErrorTraktRequest(Exception e);
-		public void onShowUpdated(TvShow show);
+		public void onShowUpdated(ShowChange change);
 		public void onShowRemoved(TvShow show);
 	}
 
@@ -172,17 +198,23 @@ public class TraktManager extends ServiceManager implements OnSharedPreferenceCh
 	public synchronized void addToQueue(TraktTask task)
 	{
 		tasks.add(task);
+		onQueueChanged();
 
 		if(tasks.size() == 1)
-			task.inQueue().execute();
+			task.inQueue().launch();
 		else
 			Toast.makeText(context, "This action will be done later...", Toast.LENGTH_SHORT).show();
 	}
 
-	//check if a show is currently updating
+	//check if a show is currently updating, can be called from any thread
 	public boolean isUpdateTaskRunning()
 	{
-		return !tasks.isEmpty() && (tasks.get(0) instanceof UpdateShowsTask);
+		return updateTaskRunning;
+	}
+
+	private static void onQueueChanged()
+	{
+		updateTaskRunning = !tasks.isEmpty() && (tasks.get(0) instanceof UpdateShowsTask);
 	}
 
 	public TraktTask getCurrentTask()
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.florianmski.tracktoid.trakt;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.jakewharton.apibuilder.ApiException;
+import com.jakewharton.trakt.TraktApiBuilder;
+import com.jakewharton.trakt.TraktException;
+
+/**
+ * Every request to trakt goes through here:
+ * - a circuit breaker by endpoint family (show, user, calendar...) stops hammering a part of the api which is down
+ * - a token bucket keeps us under trakt rate limits, it slows down when trakt struggles
+ * - reads are retried after a network or server error, with an exponential and jittered delay
+ * A read is not interrupted by the cancellation of its task: it may be shared with other callers (see SingleFlight)
+ * who still want its result, the interrupt is kept for the task to see once it's over.
+ * A post only has one caller, it is abandoned if its task is cancelled before it is sent.
+ */
+public class TraktRequests
+{
+	private final static String TAG = "TraktRequests";
+
+	private final static int MAX_ATTEMPTS = 3;
+	private final static long BASE_DELAY = 1000;
+	private final static long MAX_DELAY = 8000;
+
+	private final static int BREAKER_FAILURES = 5;
+	private final static long BREAKER_OPEN_TIME = 30 * 1000;
+
+	private final TokenBucket bucket;
+	private final int maxAttempts;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final int breakerFailures;
+	private final long breakerOpenTime;
+
+	private final Map<String, CircuitBreaker> breakers = new HashMap<String, CircuitBreaker>();
+	private final Random random = new Random();
+
+	public TraktRequests()
+	{
+		//bursts of 10 requests, 2 by second at most and one every 5s when trakt is in bad shape
+		this(new TokenBucket(10, 2, 0.2), MAX_ATTEMPTS, BASE_DELAY, MAX_DELAY, BREAKER_FAILURES, BREAKER_OPEN_TIME);
+	}
+
+	//the tests need shorter delays
+	TraktRequests(TokenBucket bucket, int maxAttempts, long baseDelay, long maxDelay, int breakerFailures, long breakerOpenTime)
+	{
+		this.bucket = bucket;
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.breakerFailures = breakerFailures;
+		this.breakerOpenTime = breakerOpenTime;
+	}
+
+	//a request which only reads something, it's retried if it fails
+	public <T> T get(TraktApiBuilder<T> builder)
+	{
+		//ApiBuilder.toString() is the url of the request
+		return get(builder.toString(), wrap(builder));
+	}
+
+	//a request which changes something on trakt, sent once
+	public <T> T send(TraktApiBuilder<T> builder)
+	{
+		return send(builder.toString(), wrap(builder));
+	}
+
+	<T> T get(String url, Request<T> request)
+	{
+		return execute(url, request, maxAttempts, false);
+	}
+
+	<T> T send(String url, Request<T> request)
+	{
+		return execute(url, request, 1, true);
+	}
+
+	private <T> T execute(String url, Request<T> request, int maxAttempts, boolean interruptible)
+	{
+		String family = getFamily(url);
+		CircuitBreaker breaker = getBreaker(family);
+
+		for(int attempt = 1; ; attempt++)
+		{
+			//don't wait for a token if the request will be refused anyway
+			if(!breaker.allow())
+				throw new ApiException("Trakt is not answering, try again later");
+
+			if(interruptible)
+			{
+				try
+				{
+					//a cancelled task doesn't send anything, even if a token is available
+					if(Thread.interrupted())
+						throw new InterruptedException();
+					bucket.acquire();
+				}
+				catch(InterruptedException e)
+				{
+					breaker.onCancel();
+					Thread.currentThread().interrupt();
+					throw new ApiException("Request cancelled");
+				}
+			}
+			else
+				bucket.acquireUninterruptibly();
+
+			try
+			{
+				T result = request.fire();
+				breaker.onSuccess();
+				bucket.speedUp();
+				return result;
+			}
+			catch(RuntimeException e)
+			{
+				//trakt answered, it's just not happy with the request
+				if(!isTransient(e))
+				{
+					breaker.onSuccess();
+					throw e;
+				}
+
+				breaker.onFailure();
+				bucket.slowDown();
+
+				if(attempt >= maxAttempts)
+					throw e;
+
+				Log.w(TAG, family + " request failed (attempt " + attempt + "), retrying");
+
+				sleepUninterruptibly(getDelay(attempt));
+			}
+		}
+	}
+
+	private static void sleepUninterruptibly(long ms)
+	{
+		boolean interrupted = false;
+		long end = SystemClock.elapsedRealtime() + ms;
+		long left = ms;
+		while(left > 0)
+		{
+			try
+			{
+				Thread.sleep(left);
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+			left = end - SystemClock.elapsedRealtime();
+		}
+
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	//network or server error, may work if we try again
+	private static boolean isTransient(RuntimeException e)
+	{
+		//otherwise trakt sent an error message (wrong password, unknown show...)
+		if(e instanceof TraktException)
+			return ((TraktException) e).getResponse() == null;
+
+		return e instanceof ApiException;
+	}
+
+	//half of the exponential delay + a random part, so clients failing together don't retry together
+	private long getDelay(int attempt)
+	{
+		long delay = Math.min(maxDelay, baseDelay << (attempt - 1));
+		synchronized(random)
+		{
+			return delay / 2 + (long) (random.nextDouble() * delay / 2);
+		}
+	}
+
+	private CircuitBreaker getBreaker(String family)
+	{
+		synchronized(breakers)
+		{
+			CircuitBreaker breaker = breakers.get(family);
+			if(breaker == null)
+			{
+				breaker = new CircuitBreaker(breakerFailures, breakerOpenTime);
+				breakers.put(family, breaker);
+			}
+			return breaker;
+		}
+	}
+
+	//ex: http://api.trakt.tv/show/summary.json/... -> show
+	private static String getFamily(String url)
+	{
+		int start = url.indexOf("://");
+		start = url.indexOf('/', start < 0 ? 0 : start + 3);
+		if(start < 0)
+			return url;
+
+		int end = url.indexOf('/', start + 1);
+		String family = end < 0 ? url.substring(start + 1) : url.substring(start + 1, end);
+
+		int dot = family.indexOf('.');
+		return dot < 0 ? family : family.substring(0, dot);
+	}
+
+	static <T> Request<T> wrap(final TraktApiBuilder<T> builder)
+	{
+		return new Request<T>()
+		{
+			@Override
+			public T fire()
+			{
+				return builder.fire();
+			}
+		};
+	}
+
+	//what is actually sent, a TraktApiBuilder outside of the tests
+	interface Request<T>
+	{
+		T fire();
+	}
+}
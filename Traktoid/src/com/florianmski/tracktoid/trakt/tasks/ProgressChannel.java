@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Progress published from a worker thread is handed to listeners on the ui thread,
+ * at most once every MIN_INTERVAL ms.
+ * Intermediate values are dropped, listeners always end up with the last one.
+ */
+public class ProgressChannel
+{
+	private final static long MIN_INTERVAL = 250;
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+	//only touched from the ui thread
+	private final List<ProgressListener> listeners = new ArrayList<ProgressListener>();
+
+	private Progress pending;
+	private boolean scheduled = false;
+	private long lastDelivery = 0;
+
+	private final Runnable deliver = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			Progress p;
+			synchronized(ProgressChannel.this)
+			{
+				p = pending;
+				pending = null;
+				scheduled = false;
+				lastDelivery = SystemClock.uptimeMillis();
+			}
+
+			if(p != null)
+			{
+				for(ProgressListener l : new ArrayList<ProgressListener>(listeners))
+					l.onProgress(p);
+			}
+		}
+	};
+
+	/**
+	 * Can be called from any thread, as often as needed
+	 */
+	public synchronized void publish(String title, int progress, String subtitle, int subProgress)
+	{
+		pending = new Progress(title, progress, subtitle, subProgress);
+
+		if(!scheduled)
+		{
+			scheduled = true;
+			long delay = Math.max(0, lastDelivery + MIN_INTERVAL - SystemClock.uptimeMillis());
+			handler.postDelayed(deliver, delay);
+		}
+	}
+
+	//drop what hasn't been delivered yet
+	public synchronized void clear()
+	{
+		handler.removeCallbacks(deliver);
+		pending = null;
+		scheduled = false;
+	}
+
+	public void addListener(ProgressListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	public void removeListener(ProgressListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+	public static class Progress
+	{
+		public final String title;
+		public final int progress;
+		public final String subtitle;
+		public final int subProgress;
+
+		private Progress(String title, int progress, String subtitle, int subProgress)
+		{
+			this.title = title;
+			this.progress = progress;
+			this.subtitle = subtitle;
+			this.subProgress = subProgress;
+		}
+	}
+
+	public interface ProgressListener
+	{
+		public void onProgress(Progress p);
+	}
+}
@@ -20,6 +20,7 @@ import android.support.v4.app.Fragment;
 import android.widget.Toast;
 
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.Library;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.jakewharton.trakt.entities.TvShow;
 
@@ -48,6 +49,8 @@ public class RemoveShowTask extends TraktTask
 		dbw.removeShow(show.tvdbId);
 		
 		dbw.close();
+
+		Library.remove(show.tvdbId);
 		
 		showToast(show.title + " removed!", Toast.LENGTH_SHORT);
 		
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt.tasks;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.support.v4.app.Fragment;
+
+/**
+ * Requests of the fragments by key (ex: "trending", "shouts/<target>"), kept outside of them
+ * so a fragment recreated after a rotation attaches to the request of the previous instance
+ * (or gets its result) instead of sending it again.
+ * The task gives its result with deliver(), it's handed to the receiver of the fragment currently attached.
+ * Meant to be used from the ui thread only.
+ */
+public class TaskRegistry
+{
+	//long enough for a rotation or a quick back and forth between screens
+	private final static long RESULT_TTL = 60 * 1000;
+
+	private static final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * Launch a task and register it under this key, a running task with the same key is cancelled
+	 */
+	public static <T> void launch(String key, TraktTask task, Fragment fragment, Receiver<T> receiver)
+	{
+		Entry e = new Entry();
+		e.task = task;
+		e.fragment = fragment;
+		e.receiver = receiver;
+
+		Entry old = entries.put(key, e);
+		if(old != null && old.task != null && old.task != task)
+			old.task.cancel(true);
+
+		task.launch();
+	}
+
+	/**
+	 * @return true if there is a running request or a recent result for this key, 
+	 * the result is given to the receiver (right now if we already have it), false if the fragment has to launch it
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> boolean attach(String key, Fragment fragment, Receiver<T> receiver)
+	{
+		purge();
+
+		Entry e = entries.get(key);
+		if(e == null)
+			return false;
+
+		if(e.task == null)
+		{
+			receiver.onResult((T) e.result);
+			return true;
+		}
+
+		e.task.reconnect(fragment);
+		e.fragment = fragment;
+		e.receiver = receiver;
+		return true;
+	}
+
+	//a request with this key is running
+	public static boolean isRunning(String key)
+	{
+		purge();
+
+		Entry e = entries.get(key);
+		return e != null && e.task != null;
+	}
+
+	public static boolean isRegistered(TraktTask task)
+	{
+		for(Entry e : entries.values())
+		{
+			if(e.task == task)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Called by the listener of the task when the result is there
+	 */
+	@SuppressWarnings("unchecked")
+	public static void deliver(String key, Object result)
+	{
+		Entry e = entries.get(key);
+		//cancelled or replaced meanwhile
+		if(e == null || e.task == null)
+			return;
+
+		Receiver<Object> receiver = (Receiver<Object>) e.receiver;
+
+		e.task = null;
+		e.fragment = null;
+		e.receiver = null;
+		e.result = result;
+		e.time = SystemClock.elapsedRealtime();
+
+		if(receiver != null)
+			receiver.onResult(result);
+	}
+
+	/**
+	 * The fragment is destroyed, forget its receivers
+	 * @param cancel cancel its running requests too, false when the fragment is about to be recreated (rotation...)
+	 */
+	public static void detach(Fragment fragment, boolean cancel)
+	{
+		for(Iterator<Entry> it = entries.values().iterator(); it.hasNext();)
+		{
+			Entry e = it.next();
+			if(e.fragment != fragment)
+				continue;
+
+			e.fragment = null;
+			e.receiver = null;
+
+			if(cancel)
+			{
+				e.task.cancel(true);
+				it.remove();
+			}
+		}
+	}
+
+	//drop old results and requests which ended without one (error, offline, nobody to deliver to...)
+	private static void purge()
+	{
+		long now = SystemClock.elapsedRealtime();
+		for(Iterator<Entry> it = entries.values().iterator(); it.hasNext();)
+		{
+			Entry e = it.next();
+			if(e.task == null ? now - e.time > RESULT_TTL : e.task.isCancelled() || e.task.getStatus() == AsyncTask.Status.FINISHED)
+				it.remove();
+		}
+	}
+
+	public interface Receiver<T>
+	{
+		public void onResult(T result);
+	}
+
+	private static class Entry
+	{
+		//null once the result is there
+		private TraktTask task;
+		private Fragment fragment;
+		private Receiver<?> receiver;
+		private Object result;
+		private long time;
+	}
+}
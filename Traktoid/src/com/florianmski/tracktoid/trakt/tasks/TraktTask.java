@@ -16,19 +16,22 @@
 
 package com.florianmski.tracktoid.trakt.tasks;
 
+import java.util.concurrent.Executor;
+
 import android.content.Context;
-import android.os.AsyncTask;
 import android.support.v4.app.Fragment;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.florianmski.tracktoid.Utils;
+import com.florianmski.tracktoid.tasks.BaseTask;
+import com.florianmski.tracktoid.tasks.TaskExecutors;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.TraktManager.TraktListener;
 import com.jakewharton.apibuilder.ApiException;
 import com.jakewharton.trakt.TraktException;
 
-public abstract class TraktTask extends AsyncTask<Void, String, Boolean>
+public abstract class TraktTask extends BaseTask<Void, String, Boolean>
 {
 	protected TraktManager tm;
 	protected Fragment fragment;
@@ -78,7 +81,13 @@ public abstract class TraktTask extends AsyncTask<Void, String, Boolean>
 	}
 	
 	@Override
-	protected Boolean doInBackground(Void... params) 
+	protected Executor getExecutor()
+	{
+		return TaskExecutors.NETWORK;
+	}
+
+	@Override
+	protected Boolean runInBackground(Void... params) 
 	{
 		if(!Utils.isOnline(context))
 		{
@@ -133,6 +142,14 @@ public abstract class TraktTask extends AsyncTask<Void, String, Boolean>
 		Log.i("Traktoid","task finish!");
 	}
 
+	@Override
+	protected void onCancelled()
+	{
+		//a cancelled task never reaches onPostExecute(), don't let it block the queue
+		tm.onAfterTraktRequest(tListener, false, inQueue);
+		Log.i("Traktoid","task cancelled!");
+	}
+
 	@Override
 	protected void onProgressUpdate(String... values) 
 	{
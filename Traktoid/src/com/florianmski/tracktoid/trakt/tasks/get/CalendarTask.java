@@ -17,18 +17,16 @@
 package com.florianmski.tracktoid.trakt.tasks.get;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import android.support.v4.app.Fragment;
 
 import com.florianmski.tracktoid.Utils;
-import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.Library;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.jakewharton.trakt.entities.CalendarDate;
 import com.jakewharton.trakt.entities.CalendarDate.CalendarTvShowEpisode;
-import com.jakewharton.trakt.entities.TvShow;
 
 public class CalendarTask extends TraktTask
 {	
@@ -53,14 +51,9 @@ public class CalendarTask extends TraktTask
 		ArrayList<CalendarDate> calendarListPremieres = new ArrayList<CalendarDate>();
 		ArrayList<CalendarDate> calendarListMyShows = new ArrayList<CalendarDate>();
 		
-		calendarListShows = (ArrayList<CalendarDate>) tm.calendarService().shows().fire();
+		calendarListShows = (ArrayList<CalendarDate>) tm.fetch(tm.calendarService().shows());
 		
-		DatabaseWrapper dbw = new DatabaseWrapper(context);
-		dbw.open();
-		
-		List<TvShow> shows = dbw.getShows();
-			
-		dbw.close();
+		Library library = Library.get(context);
 		
 		for(CalendarDate cd : calendarListShows)
 		{
@@ -75,11 +68,9 @@ public class CalendarTask extends TraktTask
 			
 			for(CalendarTvShowEpisode e : cd.episodes)
 			{				
-				int index = Collections.binarySearch(shows, e.show);
-				
 				if(e.episode.number == 1)
 					episodesPremieres.add(e);
-				if(index != -1 && index >= 0 && index < shows.size())
+				if(library.contains(e.show.tvdbId))
 					episodesMyShows.add(e);
 			}
 			
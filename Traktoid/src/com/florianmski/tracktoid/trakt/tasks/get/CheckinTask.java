@@ -22,7 +22,7 @@ public class CheckinTask extends TraktTask
 	@Override
 	protected boolean doTraktStuffInBackground()
 	{
-		checkin = tm.userService().watching(TraktManager.getUsername()).fire();
+		checkin = tm.fetch(tm.userService().watching(TraktManager.getUsername()));
 
 		return true;
 	}
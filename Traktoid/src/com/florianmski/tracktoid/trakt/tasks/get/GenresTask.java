@@ -24,7 +24,7 @@ public class GenresTask extends TraktTask
 	@Override
 	protected boolean doTraktStuffInBackground() 
 	{
-		genres = (ArrayList<Genre>) tm.genreService().shows().fire();
+		genres = (ArrayList<Genre>) tm.fetch(tm.genreService().shows());
 		
 		return true;
 	}
@@ -5,6 +5,7 @@ import java.util.List;
 import android.support.v4.app.Fragment;
 
 import com.florianmski.tracktoid.Utils;
+import com.florianmski.tracktoid.db.DatabaseWrapper;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.jakewharton.trakt.entities.Shout;
@@ -12,6 +13,9 @@ import com.jakewharton.trakt.entities.TvShowEpisode;
 
 public class ShoutsGetTask extends TraktTask
 {
+	//number of shouts loaded at once in the list
+	public final static int PAGE_SIZE = 20;
+	
 	private String tvdbId;
 	private TvShowEpisode e;
 	private List<Shout> shouts;
@@ -39,14 +43,40 @@ public class ShoutsGetTask extends TraktTask
 	{
 //		showToast("Retrieving shouts...", Toast.LENGTH_SHORT);
 		
+		List<Shout> allShouts;
 		if(e != null)
-			shouts = tm.showService().episodeShouts(tvdbId, e.season, e.number).fire();
+			allShouts = tm.fetch(tm.showService().episodeShouts(tvdbId, e.season, e.number));
 		else
-			shouts = tm.showService().shouts(tvdbId).fire();
+			allShouts = tm.fetch(tm.showService().shouts(tvdbId));
+		
+		//trakt gives us everything at once, keep it in db and only give the first page to the list
+		DatabaseWrapper dbw = new DatabaseWrapper(context);
+		dbw.open();
+		dbw.replaceShouts(getTarget(tvdbId, e), allShouts);
+		shouts = dbw.getShouts(getTarget(tvdbId, e), 0, PAGE_SIZE);
+		dbw.close();
 		
 		return true;
 	}
 	
+	@Override
+	protected boolean doOfflineTraktStuff()
+	{
+		//display what we have in cache
+		DatabaseWrapper dbw = new DatabaseWrapper(context);
+		dbw.open();
+		shouts = dbw.getShouts(getTarget(tvdbId, e), 0, PAGE_SIZE);
+		dbw.close();
+		
+		return true;
+	}
+	
+	//key of the shouts of a show or an episode in the cache
+	public static String getTarget(String tvdbId, TvShowEpisode e)
+	{
+		return (e == null) ? tvdbId : tvdbId + "/" + e.season + "/" + e.number;
+	}
+	
 	@Override
 	protected void onPostExecute(Boolean success)
 	{
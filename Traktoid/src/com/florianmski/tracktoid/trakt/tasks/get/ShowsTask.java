@@ -49,7 +49,8 @@ public class ShowsTask extends TraktTask
 	{
 //		showToast("Retrieving a list of shows...", Toast.LENGTH_SHORT);
 		
-		shows = (ArrayList<TvShow>) builder.fire();
+		//may be a post (recommendations), so it is not retried
+		shows = (ArrayList<TvShow>) tm.send(builder);
 		
 		if(sort)
 			Collections.sort(shows);
@@ -19,6 +19,12 @@ package com.florianmski.tracktoid.trakt.tasks.get;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import android.app.Notification;
 import android.app.NotificationManager;
@@ -31,7 +37,13 @@ import android.widget.Toast;
 
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.tasks.TaskExecutors;
+import com.florianmski.tracktoid.trakt.ShowChange;
+import com.florianmski.tracktoid.trakt.TraktClock;
 import com.florianmski.tracktoid.trakt.TraktManager;
+import com.florianmski.tracktoid.trakt.tasks.ProgressChannel;
+import com.florianmski.tracktoid.trakt.tasks.ProgressChannel.Progress;
+import com.florianmski.tracktoid.trakt.tasks.ProgressChannel.ProgressListener;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.florianmski.tracktoid.ui.activities.phone.MyShowsActivity;
 import com.jakewharton.trakt.entities.TvShow;
@@ -43,12 +55,38 @@ public class UpdateShowsTask extends TraktTask
 	private final static int MAX_PERCENTAGE = 100;
 	private final static int NOTIFICATION_ID = 1337;
 
+	//only one refresh runs at a time (they are queued), fragments can listen to this one
+	private final static ProgressChannel progressChannel = new ProgressChannel();
+
 	private List<TvShow> showsSelected = new ArrayList<TvShow>();
-	private TvShow lastProceedShow;
+	//shows written in the db, waiting to be sent to the listeners
+	private Queue<ShowChange> proceedShows = new ConcurrentLinkedQueue<ShowChange>();
 
 	private Notification notification;
 	private NotificationManager nm;
-	private RemoteViews contentView;
+
+	private ProgressListener notificationUpdater = new ProgressListener() 
+	{
+		@Override
+		public void onProgress(Progress p) 
+		{
+			if(notification == null)
+				createNotification();
+
+			/** 
+			 * Because it seems impossible to setSecondaryProgress on progressBar in remoteViews, 
+			 * I ended up with two different progressBar and a relativeLayout
+			 * Views are recreated each time, otherwise RemoteViews keeps every action we ever did on it
+			 */
+			RemoteViews contentView = new RemoteViews(context.getPackageName(), R.layout.notification_progress);
+			contentView.setTextViewText(R.id.textViewShow, p.title);
+			contentView.setProgressBar(R.id.progressBarShows, MAX_PERCENTAGE, p.progress, false);
+			contentView.setTextViewText(R.id.textViewSeason, p.subtitle);
+			contentView.setProgressBar(R.id.progressBarSeasons, MAX_PERCENTAGE, p.subProgress, false);
+			notification.contentView = contentView;
+			nm.notify(NOTIFICATION_ID, notification);
+		}
+	};
 
 	public UpdateShowsTask(TraktManager tm, Fragment fragment, ArrayList<TvShow> selectedShows) 
 	{
@@ -57,6 +95,18 @@ public class UpdateShowsTask extends TraktTask
 		this.showsSelected = selectedShows;
 	}
 
+	public static ProgressChannel getProgressChannel()
+	{
+		return progressChannel;
+	}
+
+	@Override
+	protected void onPreExecute()
+	{
+		super.onPreExecute();
+		progressChannel.addListener(notificationUpdater);
+	}
+
 	@Override
 	protected boolean doTraktStuffInBackground()
 	{		
@@ -65,61 +115,71 @@ public class UpdateShowsTask extends TraktTask
 		//test if user account is ok
 //		tm.accountService().test().fire();
 
+		if(showsSelected.isEmpty())
+			return true;
+
 		//sort shows by name, not really necessary
 		Collections.sort(showsSelected);
-		
-		createNotification();
-		
+
+		//download the next show while the current one is written in the db
 		DatabaseWrapper dbw = new DatabaseWrapper(context);
 		dbw.open();
 
-		int i = 0;
-		for(TvShow s : showsSelected)
+		Future<Download> next = download(showsSelected.get(0).tvdbId);
+		try
 		{
-			/** 
-			 * Because it seems impossible to setSecondaryProgress on progressBar in remoteViews, 
-			 * I ended up with two different progressBar and a relativeLayout
-			 */
-			updateProgress(s.title, (int)(i * (MAX_PERCENTAGE*1.0/showsSelected.size()*1.0)));
-			updateSecondaryProgress("Downloading...", 0);
 
-			showToast("Refreshing " + s.title + "...", Toast.LENGTH_SHORT);
+			for(int i = 0; i < showsSelected.size(); i++)
+			{
+				String title = showsSelected.get(i).title;
+				int progress = (int)(i * (MAX_PERCENTAGE*1.0/showsSelected.size()*1.0));
+				progressChannel.publish(title, progress, "Downloading...", 0);
 
-			s = tm.showService().summary(s.tvdbId).extended().fire();
+				showToast("Refreshing " + title + "...", Toast.LENGTH_SHORT);
 
-			dbw.insertOrUpdateShow(s);
-			
-			List<TvShowSeason> seasons = s.seasons;
-			dbw.insertOrUpdateSeasons(seasons, s.tvdbId);
-			for(TvShowSeason season : seasons)
-			{				
-				updateSecondaryProgress(season.season == 0 ? "Specials" : "Season " + season.season, (int) ((Math.abs(season.season-seasons.size()))*(MAX_PERCENTAGE*1.0/seasons.size()*1.0)));
+				Download d = get(next);
+				if(i + 1 < showsSelected.size())
+					next = download(showsSelected.get(i + 1).tvdbId);
 
-				List<TvShowEpisode> episodes = season.episodes.episodes;
-				dbw.insertOrUpdateEpisodes(episodes, season.url);
-			}
-			
-			dbw.refreshPercentage(s.tvdbId);
-			//get show with his progress field
-			lastProceedShow = dbw.getShow(s.tvdbId);
-			//get seasons with episodesWatched field (a bit stupid to retrieve this amount of data for only one field)
-			//TODO something more optimized
-			lastProceedShow.seasons = dbw.getSeasons(s.tvdbId, true, true);
+				TvShow s = d.show;
+				dbw.insertOrUpdateShow(s);
+
+				List<TvShowSeason> seasons = s.seasons;
+				dbw.insertOrUpdateSeasons(seasons, s.tvdbId);
+				for(TvShowSeason season : seasons)
+				{				
+					progressChannel.publish(title, progress, season.season == 0 ? "Specials" : "Season " + season.season, (int) ((Math.abs(season.season-seasons.size()))*(MAX_PERCENTAGE*1.0/seasons.size()*1.0)));
 
-			//send an event to activities which are listening to the update of a specific show (or not)
-			this.publishProgress("update");
+					List<TvShowEpisode> episodes = season.episodes.episodes;
+					dbw.insertOrUpdateEpisodes(episodes, season.url, d.fetchedAt);
+				}
 
-			i++;
+				dbw.refreshSearchIndex(s.tvdbId);
 
-			showToast(s.title + " refreshed!", Toast.LENGTH_SHORT);
-		}		
+				dbw.refreshPercentage(s.tvdbId);
+				dbw.setLastRefresh(s.tvdbId, System.currentTimeMillis());
+				//the whole show may have changed
+				ShowChange change = ShowChange.load(dbw, s.tvdbId, null);
+				if(change != null)
+					proceedShows.add(change);
+
+				//send an event to activities which are listening to the update of a specific show (or not)
+				this.publishProgress("update");
+
+				showToast(s.title + " refreshed!", Toast.LENGTH_SHORT);
+			}
+		}
+		finally
+		{
+			//does nothing if it is the one we already used
+			next.cancel(true);
+			dbw.close();
+		}
 
 		//if user choose to refresh only one show, no need to toast "show refreshed" then "refresh done"
 		if(showsSelected.size() > 1)
 			showToast("Refresh done!", Toast.LENGTH_SHORT);
-		
-		dbw.close();
-		
+
 		return true;
 	}
 
@@ -128,47 +188,94 @@ public class UpdateShowsTask extends TraktTask
 	{
 		super.onProgressUpdate(values);
 
-		if(values[0].equals("update") && lastProceedShow != null)
-			tm.onShowUpdated(lastProceedShow);
+		if(values[0].equals("update"))
+		{
+			ShowChange change;
+			while((change = proceedShows.poll()) != null)
+				tm.onShowUpdated(change);
+		}
 	}
-	
+
 	@Override
 	protected void onPostExecute(Boolean success)
 	{
 		super.onPostExecute(success);
-		
+		finish();
+	}
+
+	@Override
+	protected void onCancelled()
+	{
+		super.onCancelled();
+		finish();
+	}
+
+	private void finish()
+	{
+		//a late progress would bring the notification back
+		progressChannel.clear();
+		progressChannel.removeListener(notificationUpdater);
+
 		if(nm != null)
 			nm.cancel(NOTIFICATION_ID);
 	}
-	
+
+	private Future<Download> download(String tvdbId)
+	{
+		FutureTask<Download> future = new FutureTask<Download>(new Download(tvdbId));
+		TaskExecutors.NETWORK.execute(future);
+		return future;
+	}
+
+	//wait for a download, errors are thrown as if the request was made on this thread
+	private Download get(Future<Download> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
 	private void createNotification()
 	{
 		notification = new Notification(R.drawable.ab_icon_refresh, "Refreshing...", System.currentTimeMillis());
 		nm = (NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE);
-		contentView = new RemoteViews(context.getPackageName(), R.layout.notification_progress);
-		notification.contentView = contentView;
 
 		Intent notificationIntent = new Intent(context, MyShowsActivity.class);
 		notificationIntent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
 		PendingIntent contentIntent = PendingIntent.getActivity(context, 0, notificationIntent, 0);
 		notification.contentIntent = contentIntent;
 		notification.flags = Notification.FLAG_NO_CLEAR;
-		
-		nm.notify(NOTIFICATION_ID, notification);
-	}
-	
-	private void updateProgress(String text, int progress)
-	{
-		contentView.setTextViewText(R.id.textViewShow, text);
-		contentView.setProgressBar(R.id.progressBarShows, 100, progress, false);
-		nm.notify(NOTIFICATION_ID, notification);
 	}
-	
-	private void updateSecondaryProgress(String text, int progress)
+
+	private class Download implements Callable<Download>
 	{
-		contentView.setTextViewText(R.id.textViewSeason, text);
-		contentView.setProgressBar(R.id.progressBarSeasons, 100, progress, false);
-		nm.notify(NOTIFICATION_ID, notification);
-	}
+		private final String tvdbId;
+		private long fetchedAt;
+		private TvShow show;
 
+		private Download(String tvdbId)
+		{
+			this.tvdbId = tvdbId;
+		}
+
+		@Override
+		public Download call()
+		{
+			//local changes made after this point win over what trakt is about to send
+			fetchedAt = TraktClock.now(context);
+			show = tm.fetch(tm.showService().summary(tvdbId).extended());
+			return this;
+		}
+	}
 }
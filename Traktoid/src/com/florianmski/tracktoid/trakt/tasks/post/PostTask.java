@@ -29,7 +29,7 @@ public class PostTask extends TraktTask
 
 		doPrePostStuff();
 
-		r = (Response) builder.fire();
+		r = (Response) tm.send(builder);
 
 		if(r.error == null)
 		{
@@ -1,8 +1,11 @@
 package com.florianmski.tracktoid.trakt.tasks.post;
 
+import java.util.HashSet;
+
 import android.support.v4.app.Fragment;
 
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.trakt.ShowChange;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.enumerations.Rating;
@@ -11,6 +14,7 @@ public class RateTask extends PostTask
 {
 	private TvShow show;
 	private Rating rating;
+	private ShowChange change;
 
 	public RateTask(TraktManager tm, Fragment fragment, TvShow show, Rating rating) 
 	{
@@ -27,7 +31,9 @@ public class RateTask extends PostTask
 
 		DatabaseWrapper dbw = new DatabaseWrapper(context);
 		dbw.open();
-		dbw.insertOrUpdateShow(show);
+		dbw.setShowRating(show.tvdbId, rating);
+		//no season changed
+		change = ShowChange.load(dbw, show.tvdbId, new HashSet<Integer>());
 		dbw.close();
 	}
 
@@ -36,8 +42,8 @@ public class RateTask extends PostTask
 	{
 		super.onPostExecute(success);
 
-		if(success)
-			tm.onShowUpdated(show);
+		if(success && change != null)
+			tm.onShowUpdated(change);
 	}
 
 }
@@ -18,18 +18,21 @@ package com.florianmski.tracktoid.trakt.tasks.post;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import android.support.v4.app.Fragment;
 import android.widget.Toast;
 
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.trakt.ShowChange;
+import com.florianmski.tracktoid.trakt.TraktClock;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.jakewharton.trakt.entities.Response;
-import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.entities.TvShowSeason;
 import com.jakewharton.trakt.services.ShowService.EpisodeSeenBuilder;
 import com.jakewharton.trakt.services.ShowService.EpisodeUnseenBuilder;
@@ -39,8 +42,10 @@ public class WatchedEpisodesTask extends TraktTask
 	private String tvdbId;
 	private int [] seasons;
 	private List<Map<Integer, Boolean>> listWatched = new ArrayList<Map<Integer,Boolean>>();
-	private TvShow show;
+	private ShowChange change;
 	private boolean checkin;
+	//whole seasons are marked, not some of their episodes
+	private boolean wholeSeasons = false;
 
 	public WatchedEpisodesTask(TraktManager tm, Fragment fragment, String tvdbId, int [] seasons, List<Map<Integer, Boolean>> listWatched) 
 	{
@@ -67,6 +72,7 @@ public class WatchedEpisodesTask extends TraktTask
 
 		this.tvdbId = tvdbId;
 		this.seasons = new int[seasons.size()];
+		this.wholeSeasons = true;
 
 		for(int i = 0; i < seasons.size(); i++)
 		{
@@ -98,11 +104,10 @@ public class WatchedEpisodesTask extends TraktTask
 				index++;
 			}
 //			tm.showService().cancelCheckin().fire();
-			Response r = tm.showService()
+			Response r = tm.send(tm.showService()
 			.checkin(Integer.valueOf(tvdbId))
 			.episode(listWatched.get(index).keySet().iterator().next())
-			.season(seasons[index])
-			.fire();
+			.season(seasons[index]));
 			
 			if(r.error != null)
 			{
@@ -142,32 +147,56 @@ public class WatchedEpisodesTask extends TraktTask
 			}
 
 			if(seenEpisodes > 0)
-				seenBuilder.fire();
+				tm.send(seenBuilder);
 			if(unseenEpisodes > 0)
-				unseenBuilder.fire();
+				tm.send(unseenBuilder);
 			
 			showToast("Send to Trakt!", Toast.LENGTH_SHORT);
 		}
 
 
+		//stamped now that trakt has it, in trakt time: a refresh which fetched the show before (ex: queued ahead of this task)
+		//is older and can't undo it, one fetching it after gets it from trakt anyway
+		long modified = TraktClock.now(context);
+
 		DatabaseWrapper dbw = new DatabaseWrapper(context);
 		dbw.open();
 
-		for(int i = 0; i < seasons.length; i++)
+		dbw.beginTransaction();
+		try
 		{
-			Map<Integer, Boolean> listEpisodes = listWatched.get(i);
-			for (Iterator<Integer> it = listEpisodes.keySet().iterator() ; it.hasNext() ; )
+			for(int i = 0; i < seasons.length; i++)
 			{
-				Integer episode = it.next();
-				Boolean watched = listEpisodes.get(episode);
+				Map<Integer, Boolean> listEpisodes = listWatched.get(i);
+
+				if(wholeSeasons)
+				{
+					if(!listEpisodes.isEmpty())
+						dbw.markSeasonAsWatched(listEpisodes.values().iterator().next(), modified, tvdbId, seasons[i]);
+					continue;
+				}
+
+				for (Iterator<Integer> it = listEpisodes.keySet().iterator() ; it.hasNext() ; )
+				{
+					Integer episode = it.next();
+					Boolean watched = listEpisodes.get(episode);
 
-				dbw.markEpisodeAsWatched(watched, tvdbId, seasons[i], episode);
+					dbw.markEpisodeAsWatched(watched, modified, tvdbId, seasons[i], episode);
+				}
 			}
+
+			dbw.refreshPercentage(tvdbId);
+			dbw.setTransactionSuccessful();
+		}
+		finally
+		{
+			dbw.endTransaction();
 		}
 
-		dbw.refreshPercentage(tvdbId);
-		show = dbw.getShow(tvdbId);			
-		show.seasons = dbw.getSeasons(tvdbId, true, true);
+		Set<Integer> changedSeasons = new HashSet<Integer>();
+		for(int season : seasons)
+			changedSeasons.add(season);
+		change = ShowChange.load(dbw, tvdbId, changedSeasons);
 
 		dbw.close();
 		
@@ -179,8 +208,8 @@ public class WatchedEpisodesTask extends TraktTask
 	{
 		super.onPostExecute(success);
 
-		if(success && show != null)
-			tm.onShowUpdated(show);
+		if(success && change != null)
+			tm.onShowUpdated(change);
 	}
 
 	public String getTvdbId() {
@@ -207,11 +236,7 @@ public class WatchedEpisodesTask extends TraktTask
 		this.listWatched = listWatched;
 	}
 
-	public TvShow getShow() {
-		return show;
-	}
-
-	public void setShow(TvShow show) {
-		this.show = show;
+	public ShowChange getChange() {
+		return change;
 	}
 }
@@ -1,5 +1,7 @@
 package com.florianmski.tracktoid.ui.fragments;
 
+import java.util.Collections;
+
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -26,8 +28,11 @@ import com.florianmski.tracktoid.TraktoidConstants;
 import com.florianmski.tracktoid.Utils;
 import com.florianmski.tracktoid.adapters.pagers.PagerDashboardAdapter;
 import com.florianmski.tracktoid.adapters.pagers.PagerDashboardAdapter.onDashboardButtonClicked;
-import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.tasks.DBTask;
 import com.florianmski.tracktoid.image.Image;
+import com.florianmski.tracktoid.sync.SyncScheduler;
+import com.florianmski.tracktoid.trakt.ShowChange;
+import com.florianmski.tracktoid.trakt.TraktClock;
 import com.florianmski.tracktoid.trakt.tasks.get.ActivityTask;
 import com.florianmski.tracktoid.trakt.tasks.get.CheckinTask;
 import com.florianmski.tracktoid.trakt.tasks.get.CheckinTask.CheckinListener;
@@ -96,8 +101,9 @@ public class HomeFragment extends TraktFragment implements onDashboardButtonClic
 		//show sometimes a dialog to rate the app on the market 
 		AppRater.app_launched(getActivity());
 		
-		//sync with trakt
-		new ActivityTask(tm, this).silentConnectionError(true).execute();
+		//sync with trakt, unless the background sync just did it
+		if(!SyncScheduler.isFresh(getActivity()))
+			new ActivityTask(tm, this).silentConnectionError(true).launch();
 
 		//Trying to set high definition image on high resolution
 		//does not seem to be a great idea, it's slow and I sometimes get an outOfMemoryError :/
@@ -139,16 +145,33 @@ public class HomeFragment extends TraktFragment implements onDashboardButtonClic
 							{
 								if(success)
 								{
-									//unseen the episode we've canceled
-									DatabaseWrapper dbw = new DatabaseWrapper(getActivity());
-									dbw.open();
-									dbw.markEpisodeAsWatched(false, tvdbId, episode.season, episode.number);
-									dbw.refreshPercentage(tvdbId);
-									dbw.close();
+									//unseen the episode we've canceled (another checkin may replace it meanwhile)
+									final String showId = tvdbId;
+									final TvShowEpisode canceled = episode;
+									new DBTask(getActivity().getApplicationContext(), null)
+									{
+										private ShowChange change;
+
+										@Override
+										protected void doDBStuff()
+										{
+											dbw.markEpisodeAsWatched(false, TraktClock.now(context), showId, canceled.season, canceled.number);
+											dbw.refreshPercentage(showId);
+											change = ShowChange.load(dbw, showId, Collections.singleton(canceled.season));
+										}
+
+										@Override
+										protected void onPostExecute(Boolean success)
+										{
+											//the show may not be in the library
+											if(success && change != null)
+												tm.onShowUpdated(change);
+										}
+									}.launch();
 									rlWatchingNow.setVisibility(View.INVISIBLE);
 								}
 							}
-						}).execute();
+						}).launch();
 					}
 				})
 				.setNegativeButton("No", new DialogInterface.OnClickListener() 
@@ -231,7 +254,7 @@ public class HomeFragment extends TraktFragment implements onDashboardButtonClic
 					rlWatchingNow.setVisibility(View.INVISIBLE);
 				}
 			}
-		}).silent(true).execute();
+		}).silent(true).launch();
 	}
 
 	@Override
@@ -3,11 +3,13 @@ package com.florianmski.tracktoid.ui.fragments;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import net.londatiga.android.ActionItem;
 import net.londatiga.android.QuickAction;
 import net.londatiga.android.QuickAction.OnActionItemClickListener;
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnMultiChoiceClickListener;
 import android.content.Intent;
@@ -44,6 +46,10 @@ import com.florianmski.tracktoid.db.tasks.DBAdapter;
 import com.florianmski.tracktoid.db.tasks.DBSeasonsTask;
 import com.florianmski.tracktoid.image.Fanart;
 import com.florianmski.tracktoid.image.Image;
+import com.florianmski.tracktoid.tasks.BaseTask;
+import com.florianmski.tracktoid.tasks.TaskExecutors;
+import com.florianmski.tracktoid.trakt.ChangeBus;
+import com.florianmski.tracktoid.trakt.ShowChange;
 import com.florianmski.tracktoid.trakt.tasks.post.RateTask;
 import com.florianmski.tracktoid.trakt.tasks.post.WatchedEpisodesTask;
 import com.florianmski.tracktoid.ui.activities.phone.EpisodeActivity;
@@ -146,6 +152,10 @@ public class MyShowFragment extends TraktFragment
 
 			if(this.show == null || !this.show.tvdbId.equals(show.tvdbId))
 			{
+				if(this.show != null)
+					unsubscribe(ChangeBus.showTopic(this.show.tvdbId));
+				subscribe(ChangeBus.showTopic(show.tvdbId));
+
 				this.show = show;
 				ivBackground.setImageBitmap(null);
 
@@ -167,7 +177,7 @@ public class MyShowFragment extends TraktFragment
 						else
 							getStatusView().hide().text(null);
 					}
-				}, show.tvdbId, false, false).execute();
+				}, show.tvdbId, false, false).launch();
 
 				displayClearLogo();
 
@@ -185,24 +195,32 @@ public class MyShowFragment extends TraktFragment
 
 	private void displayClearLogo()
 	{
-		new Thread()
+		final String tvdbId = show.tvdbId;
+		final Context context = getActivity().getApplicationContext();
+		new BaseTask<Void, Void, String>()
 		{
 			@Override
-			public void run()
+			protected Executor getExecutor()
 			{
-				final String url = Fanart.getFanartParser().getFanart(show.tvdbId, Fanart.CLEARLOGO, getActivity());
-				if(getActivity() != null)
-					getActivity().runOnUiThread(new Runnable() 
-					{
-						@Override
-						public void run()
-						{
-							AQuery aq = new AQuery(getActivity());
-							aq.id(ivBackground).image(url, true, false, 0, 0, null, android.R.anim.fade_in);
-						}
-					});
+				return TaskExecutors.NETWORK;
+			}
+
+			@Override
+			protected String runInBackground(Void... params)
+			{
+				return Fanart.getFanartParser().getFanart(tvdbId, Fanart.CLEARLOGO, context);
+			}
+
+			@Override
+			protected void onPostExecute(String url)
+			{
+				if(Utils.isActivityFinished(getActivity()))
+					return;
+
+				AQuery aq = new AQuery(getActivity());
+				aq.id(ivBackground).image(url, true, false, 0, 0, null, android.R.anim.fade_in);
 			}
-		}.start();
+		}.launch();
 	}
 
 	private void displayNextEpisode()
@@ -395,17 +413,18 @@ public class MyShowFragment extends TraktFragment
 	}
 
 	@Override
-	public void onShowUpdated(TvShow show) 
+	public void onShowUpdated(ShowChange change) 
 	{
-		if(show.tvdbId.equals(this.show.tvdbId) && adapter != null)
+		if(adapter != null)
 		{
-			displayPercentage(show.progress);
+			displayPercentage(change.show.progress);
 			displayNextEpisode();
 
-			if(show.seasons != null)
-				adapter.reloadData(show.seasons);
+			//seasons counts are enough here
+			if(change.hasSeasonsChanged())
+				adapter.reloadData(change.seasons);
 
-			this.show = show;
+			this.show = change.show;
 			getSherlockActivity().invalidateOptionsMenu();
 		}
 	}
@@ -413,8 +432,7 @@ public class MyShowFragment extends TraktFragment
 	@Override
 	public void onShowRemoved(TvShow show)
 	{
-		if(show.tvdbId.equals(show.tvdbId))
-			getActivity().finish();
+		getActivity().finish();
 	}
 
 	private class ProgressBarRunnable implements Runnable
@@ -12,7 +12,6 @@ import android.content.DialogInterface.OnMultiChoiceClickListener;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.v4.app.FragmentTransaction;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -36,11 +35,16 @@ import com.florianmski.tracktoid.TraktoidConstants;
 import com.florianmski.tracktoid.Utils;
 import com.florianmski.tracktoid.adapters.GridPosterAdapter;
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.Library;
 import com.florianmski.tracktoid.db.tasks.DBAdapter;
 import com.florianmski.tracktoid.db.tasks.DBShowsTask;
+import com.florianmski.tracktoid.trakt.ChangeBus;
 import com.florianmski.tracktoid.image.Image;
+import com.florianmski.tracktoid.trakt.ShowChange;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.tasks.RemoveShowTask;
+import com.florianmski.tracktoid.trakt.tasks.ProgressChannel.Progress;
+import com.florianmski.tracktoid.trakt.tasks.ProgressChannel.ProgressListener;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask.ShowsListener;
@@ -65,6 +69,20 @@ public class MyShowsFragment extends TraktFragment
 
 	private GridPosterAdapter adapter;
 
+	//shows how far the running refresh is, only exists while it runs
+	private ProgressBar pbRefresh;
+	private Progress lastProgress;
+
+	private ProgressListener refreshListener = new ProgressListener()
+	{
+		@Override
+		public void onProgress(Progress p)
+		{
+			lastProgress = p;
+			showRefreshProgress();
+		}
+	};
+
 	public static MyShowsFragment newInstance(Bundle args)
 	{
 		MyShowsFragment f = new MyShowsFragment();
@@ -84,6 +102,7 @@ public class MyShowsFragment extends TraktFragment
 	{
 		super.onCreate(savedInstanceState);
 		setHasOptionsMenu(true);
+		subscribe(ChangeBus.TOPIC_SHOWS);
 	}
 
 	@Override
@@ -121,10 +140,18 @@ public class MyShowsFragment extends TraktFragment
 			}
 		});
 
-		DatabaseWrapper dbw = new DatabaseWrapper(getActivity());
-		dbw.open();
-		boolean isDBEmpty = dbw.isEmpty();
-		dbw.close();		
+		//shows are already in memory if another screen loaded them
+		Library library = Library.peek();
+		boolean isDBEmpty;
+		if(library != null)
+			isDBEmpty = library.isEmpty();
+		else
+		{
+			DatabaseWrapper dbw = new DatabaseWrapper(getActivity());
+			dbw.open();
+			isDBEmpty = dbw.isEmpty();
+			dbw.close();
+		}
 
 		refreshGridView();
 
@@ -143,6 +170,11 @@ public class MyShowsFragment extends TraktFragment
 					}
 				}, tm.userService().libraryShowsAll(TraktManager.getUsername()), true));
 		}
+		else if(library != null)
+		{
+			adapter.updateShows(new ArrayList<TvShow>(library.getShows()));
+			getStatusView().hide().text(null);
+		}
 		else
 			new DBShowsTask(getActivity(), new DBAdapter() 
 			{
@@ -152,7 +184,7 @@ public class MyShowsFragment extends TraktFragment
 					adapter.updateShows(shows);
 					getStatusView().hide().text(null);
 				}
-			}).execute();
+			}).launch();
 
 		gd.setOnItemClickListener(new OnItemClickListener() 
 		{
@@ -342,13 +374,17 @@ public class MyShowsFragment extends TraktFragment
 		{
 //			int value = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 100, getResources().getDisplayMetrics());
 			int value = getSherlockActivity().getSupportActionBar().getHeight();
-			ProgressBar pbRefresh = new ProgressBar(getActivity());
+			//horizontal so it can show how many shows are already refreshed
+			pbRefresh = new ProgressBar(getActivity(), null, android.R.attr.progressBarStyleHorizontal);
 			pbRefresh.setIndeterminate(true);
+			pbRefresh.setMax(100);
 			RelativeLayout rl = new RelativeLayout(getActivity());
-			Log.e("test","value : "+value);
-			rl.setLayoutParams(new LayoutParams(value, value));
-			pbRefresh.setLayoutParams(new RelativeLayout.LayoutParams(value, value));
+			rl.setLayoutParams(new LayoutParams(value * 2, value));
+			RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(value * 2, LayoutParams.WRAP_CONTENT);
+			params.addRule(RelativeLayout.CENTER_VERTICAL);
+			pbRefresh.setLayoutParams(params);
 			rl.addView(pbRefresh);
+			showRefreshProgress();
 
 			menu.add(0, R.id.action_bar_refresh, 0, "Refresh")
 			.setActionView(rl)
@@ -384,14 +420,28 @@ public class MyShowsFragment extends TraktFragment
 	@Override
 	public void onAfterTraktRequest(boolean success) 
 	{
+		if(!tm.isUpdateTaskRunning())
+		{
+			pbRefresh = null;
+			lastProgress = null;
+		}
 		getSherlockActivity().invalidateOptionsMenu();
 	}
 
+	private void showRefreshProgress()
+	{
+		if(pbRefresh == null || lastProgress == null)
+			return;
+
+		pbRefresh.setIndeterminate(false);
+		pbRefresh.setProgress(lastProgress.progress);
+	}
+
 	@Override
-	public void onShowUpdated(TvShow show)
+	public void onShowUpdated(ShowChange change)
 	{		
 		if(adapter != null)
-			adapter.updateShow(show);
+			adapter.updateShow(change.show, gd);
 	}
 
 
@@ -463,6 +513,14 @@ public class MyShowsFragment extends TraktFragment
 	public void onResume()
 	{
 		super.onResume();
+		UpdateShowsTask.getProgressChannel().addListener(refreshListener);
+	}
+
+	@Override
+	public void onPause()
+	{
+		super.onPause();
+		UpdateShowsTask.getProgressChannel().removeListener(refreshListener);
 	}
 
 	@Override
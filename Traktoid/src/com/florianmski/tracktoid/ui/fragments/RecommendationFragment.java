@@ -1,6 +1,8 @@
 package com.florianmski.tracktoid.ui.fragments;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import android.content.Intent;
 import android.os.Bundle;
@@ -13,25 +15,34 @@ import android.widget.ArrayAdapter;
 import android.widget.ListView;
 
 import com.actionbarsherlock.app.ActionBar;
+import com.florianmski.tracktoid.EntityCodec;
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.TraktoidConstants;
 import com.florianmski.tracktoid.adapters.lists.ListRecommendationAdapter;
 import com.florianmski.tracktoid.adapters.lists.ListRecommendationAdapter.DismissListener;
+import com.florianmski.tracktoid.trakt.TimedCache;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry.Receiver;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.florianmski.tracktoid.trakt.tasks.get.GenresTask;
 import com.florianmski.tracktoid.trakt.tasks.get.GenresTask.GenresListener;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask.ShowsListener;
 import com.florianmski.tracktoid.trakt.tasks.post.PostTask;
-import com.florianmski.tracktoid.trakt.tasks.post.PostTask.PostListener;
 import com.florianmski.tracktoid.ui.activities.phone.ShowActivity;
 import com.jakewharton.trakt.entities.Genre;
-import com.jakewharton.trakt.entities.Response;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.services.RecommendationsService.ShowsBuilder;
 
 public class RecommendationFragment extends TraktFragment implements ActionBar.OnNavigationListener
 {	
+	//recommendations don't move much, keep them for a while
+	private final static long CACHE_TTL = 30 * 60 * 1000;
+	private final static String ALL_GENRES = "all";
+
+	//shared between instances so coming back to this screen is instant too
+	private static TimedCache<String, ArrayList<TvShow>> cache = new TimedCache<String, ArrayList<TvShow>>(CACHE_TTL);
+
 	private ListView lvRecommendations;
 
 	private ListRecommendationAdapter adapter;
@@ -81,12 +92,19 @@ public class RecommendationFragment extends TraktFragment implements ActionBar.O
 					RecommendationFragment.this.genres = genres;
 					setListNavigationMode();				
 				}
-			}).execute();
+			}).launch();
 		}
 		else
 		{
 			setListNavigationMode();
 			setAdapter();
+
+			//requests the previous instance left running
+			for(int i = 0; i <= genres.size(); i++)
+			{
+				String key = getKey(getGenre(i));
+				TaskRegistry.attach(getTaskKey(key), this, createReceiver(key));
+			}
 		}
 
 		lvRecommendations.setOnItemClickListener(new OnItemClickListener() 
@@ -149,53 +167,143 @@ public class RecommendationFragment extends TraktFragment implements ActionBar.O
 			@Override
 			public void onDismiss(String tvdbId) 
 			{
-				new PostTask(tm, RecommendationFragment.this, tm.recommendationsService().dismissShow(Integer.valueOf(tvdbId)), new PostListener() 
-				{
-					@Override
-					public void onComplete(Response r, boolean success) 
-					{
-						adapter.clear();
-						createGetRecommendationsTask().execute();
-					}
-				}).execute();
+				//trakt won't recommend it anymore, no need to refetch anything
+				dismissLocally(tvdbId);
+				new PostTask(tm, RecommendationFragment.this, tm.recommendationsService().dismissShow(Integer.valueOf(tvdbId)), null).launch();
 			}
 		});
 	}
 
-	private TraktTask createGetRecommendationsTask()
+	private void dismissLocally(String tvdbId)
+	{
+		//the displayed list is one of the cached ones but it may have expired meanwhile
+		List<ArrayList<TvShow>> lists = cache.values();
+		if(shows != null)
+			lists.add(shows);
+
+		for(ArrayList<TvShow> list : lists)
+		{
+			for(Iterator<TvShow> it = list.iterator(); it.hasNext();)
+			{
+				if(it.next().tvdbId.equals(tvdbId))
+					it.remove();
+			}
+		}
+
+		setAdapter();
+	}
+
+	private int getSelectedIndex()
+	{
+		return getSherlockActivity().getSupportActionBar().getSelectedNavigationIndex();
+	}
+
+	private Genre getGenre(int index)
+	{
+		return index <= 0 || index > genres.size() ? null : genres.get(index-1);
+	}
+
+	private static String getKey(Genre genre)
+	{
+		return genre == null ? ALL_GENRES : genre.name;
+	}
+
+	private static String getTaskKey(String key)
+	{
+		return "recommendations/" + key;
+	}
+
+	private void showRecommendations(int index)
+	{
+		Genre genre = getGenre(index);
+		ArrayList<TvShow> cached = cache.get(getKey(genre));
+
+		if(cached != null)
+		{
+			shows = cached;
+			setAdapter();
+		}
+		else
+		{
+			getStatusView().show().text("Retrieving recommendations" + ((genre == null) ? "" : " in \"" + genre.name + "\"") + ",\nPlease wait...");
+
+			//the background fetch will display it when done
+			if(!TaskRegistry.isRunning(getTaskKey(getKey(genre))))
+				getRecommendations(genre, false);
+		}
+
+		prefetch(index - 1);
+		prefetch(index + 1);
+	}
+
+	private void prefetch(int index)
 	{
-		int index = getSherlockActivity().getSupportActionBar().getSelectedNavigationIndex();
-		Genre genre = index <= 0 || index > genres.size() ? null : genres.get(index-1);
-		getStatusView().show().text("Retrieving recommendations" + ((genre == null) ? "" : " in \"" + genre.name + "\"") + ",\nPlease wait...");
+		if(index < 0 || index > genres.size())
+			return;
 
+		String key = getKey(getGenre(index));
+		if(cache.contains(key) || TaskRegistry.isRunning(getTaskKey(key)))
+			return;
+
+		getRecommendations(getGenre(index), true);
+	}
+
+	private void getRecommendations(Genre genre, boolean background)
+	{
+		final String key = getKey(genre);
 		ShowsBuilder builder = tm.recommendationsService().shows();
 
 		if(genre != null)
-			builder.genre(genre);			
+			builder.genre(genre);
 
-		return commonTask = new ShowsTask(tm, this, new ShowsListener() 
+		TraktTask task = new ShowsTask(tm, this, new ShowsListener() 
 		{
 			@Override
 			public void onShows(ArrayList<TvShow> shows) 
 			{
-				RecommendationFragment.this.shows = shows;
-				setAdapter();
+				TaskRegistry.deliver(getTaskKey(key), shows);
 			}
 		}, builder, false);
+
+		if(background)
+			task.silent(true).silentConnectionError(true);
+		else
+			commonTask = task;
+
+		TaskRegistry.launch(getTaskKey(key), task, this, createReceiver(key));
+	}
+
+	private Receiver<ArrayList<TvShow>> createReceiver(final String key)
+	{
+		return new Receiver<ArrayList<TvShow>>()
+		{
+			@Override
+			public void onResult(ArrayList<TvShow> shows)
+			{
+				cache.put(key, shows);
+
+				//only display it if the user is waiting for this genre
+				if(key.equals(getKey(getGenre(getSelectedIndex()))))
+				{
+					RecommendationFragment.this.shows = shows;
+					setAdapter();
+				}
+			}
+		};
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public void onRestoreState(Bundle savedInstanceState) 
 	{
-		shows = (ArrayList<TvShow>) savedInstanceState.get("shows");
+		shows = EntityCodec.getShows(savedInstanceState, "shows");
 		genres = (ArrayList<Genre>) savedInstanceState.get("genres");
 	}
 
 	@Override
 	public void onSaveState(Bundle toSave) 
 	{
-		toSave.putSerializable("shows", shows);
+		EntityCodec.putShows(toSave, "shows", shows);
 		toSave.putSerializable("genres", genres);
 	}
 
@@ -204,11 +312,7 @@ public class RecommendationFragment extends TraktFragment implements ActionBar.O
 	{
 		//don't know why but this event is fired two times when activity is recreated, strange...
 		if(recreation == 0)
-		{
-			if(adapter != null)
-				adapter.clear();
-			createGetRecommendationsTask().execute();
-		}
+			showRecommendations(itemPosition);
 		else 
 			recreation--;
 		return false;
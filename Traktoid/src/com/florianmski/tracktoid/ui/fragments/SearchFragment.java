@@ -1,9 +1,18 @@
 package com.florianmski.tracktoid.ui.fragments;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -14,9 +23,12 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ListView;
 
+import com.florianmski.tracktoid.EntityCodec;
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.TraktoidConstants;
 import com.florianmski.tracktoid.adapters.lists.ListSearchAdapter;
+import com.florianmski.tracktoid.db.tasks.DBAdapter;
+import com.florianmski.tracktoid.db.tasks.DBSearchTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask.ShowsListener;
 import com.florianmski.tracktoid.ui.activities.phone.ShowActivity;
@@ -24,7 +36,41 @@ import com.jakewharton.trakt.entities.TvShow;
 
 public class SearchFragment extends TraktFragment
 {
+	//wait for the user to stop typing before asking trakt
+	private final static int DEBOUNCE_DELAY = 600;
+	private final static int MIN_QUERY_LENGTH = 3;
+	private final static int MAX_CACHED_QUERIES = 20;
+	
+	//last remote results, shared between instances so a rotation doesn't refetch them
+	private final static Map<String, ArrayList<TvShow>> cache = new LinkedHashMap<String, ArrayList<TvShow>>(MAX_CACHED_QUERIES, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ArrayList<TvShow>> eldest)
+		{
+			return size() > MAX_CACHED_QUERIES;
+		}
+	};
+	
 	private ArrayList<TvShow> shows = new ArrayList<TvShow>();
+	//results from our library, displayed while typing and before remote results
+	private List<TvShow> localShows = new ArrayList<TvShow>();
+	private List<TvShow> remoteShows = new ArrayList<TvShow>();
+	private DBSearchTask localTask;
+	
+	private String query = "";
+	//incremented each time the query changes, results of an older query are dropped
+	private int querySeq = 0;
+	private Handler handler = new Handler();
+	private Runnable remoteSearch = new Runnable() 
+	{
+		@Override
+		public void run() 
+		{
+			searchRemotely(false);
+		}
+	};
 	
 	private ListView lvSearch;
 	private EditText edtSearch;
@@ -75,41 +121,165 @@ public class SearchFragment extends TraktFragment
 			}
 		});
         
+        edtSearch.addTextChangedListener(new TextWatcher() 
+        {
+			@Override
+			public void onTextChanged(CharSequence s, int start, int before, int count) {}
+			
+			@Override
+			public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+			
+			@Override
+			public void afterTextChanged(Editable s) 
+			{
+				onQueryChanged(s.toString().trim());
+			}
+		});
+        
         btnSearch.setOnClickListener(new OnClickListener()
         {
 			@Override
 			public void onClick(View v)
 			{
-				if(adapter != null)
-					adapter.clear();
+				onQueryChanged(edtSearch.getText().toString().trim());
+				searchRemotely(true);
+			}
+		});
+	}
+	
+	private void onQueryChanged(String search)
+	{
+		//the text watcher is also fired when the edit text restores its state
+		if(search.equals(query))
+			return;
+		
+		query = search;
+		querySeq++;
+		
+		handler.removeCallbacks(remoteSearch);
+		if(commonTask != null)
+		{
+			commonTask.cancel(true);
+			commonTask = null;
+		}
+		
+		ArrayList<TvShow> cached = cache.get(getCacheKey(search));
+		remoteShows = cached == null ? new ArrayList<TvShow>() : cached;
+		
+		searchLocally(search);
+		
+		if(cached == null && search.length() >= MIN_QUERY_LENGTH)
+			handler.postDelayed(remoteSearch, DEBOUNCE_DELAY);
+	}
+	
+	private void searchRemotely(boolean explicit)
+	{
+		handler.removeCallbacks(remoteSearch);
+		
+		final String search = query;
+		final int seq = querySeq;
+		
+		if(search.length() == 0 || (commonTask != null && commonTask.getStatus() != AsyncTask.Status.FINISHED))
+			return;
+		
+		ArrayList<TvShow> cached = cache.get(getCacheKey(search));
+		if(cached != null)
+		{
+			onRemoteResults(cached, explicit);
+			return;
+		}
+		
+		if(explicit)
+			getStatusView().show().text("Searching for \"" + search + "\",\nPlease wait...");
+		
+		commonTask = new ShowsTask(tm, SearchFragment.this, new ShowsListener() 
+		{
+			@Override
+			public void onShows(ArrayList<TvShow> shows) 
+			{
+				cache.put(getCacheKey(search), shows);
 				
-				String search = edtSearch.getText().toString().trim();
-				getStatusView().show().text("Searching for \"" + search + "\",\nPlease wait...");
+				//user typed something else meanwhile
+				if(seq != querySeq)
+					return;
 				
-				commonTask = new ShowsTask(tm, SearchFragment.this, new ShowsListener() 
-				{
-					@Override
-					public void onShows(ArrayList<TvShow> shows) 
-					{
-						SearchFragment.this.shows = shows;
-						
-						if(adapter == null)
-						{
-							adapter = new ListSearchAdapter(getActivity(), shows);
-							lvSearch.setAdapter(adapter);
-						}
-						else
-							adapter.reloadData(shows);
-						
-						if(adapter.isEmpty())
-							getStatusView().hide().text("Nothing found, sorry man...");
-						else
-							getStatusView().hide().text(null);
-					}
-				}, tm.searchService().shows(search), false);
-        		commonTask.execute();
+				onRemoteResults(shows, true);
 			}
-		});
+		}, tm.searchService().shows(search), false);
+		commonTask.launch();
+	}
+	
+	private void onRemoteResults(ArrayList<TvShow> shows, boolean updateStatus)
+	{
+		remoteShows = shows;
+		setResults(merge(localShows, remoteShows));
+		
+		if(!updateStatus)
+			return;
+		
+		if(adapter.isEmpty())
+			getStatusView().hide().text("Nothing found, sorry man...");
+		else
+			getStatusView().hide().text(null);
+	}
+	
+	private static String getCacheKey(String search)
+	{
+		return search.toLowerCase();
+	}
+	
+	private void searchLocally(String search)
+	{
+		if(localTask != null)
+			localTask.cancel(false);
+		
+		localTask = new DBSearchTask(getActivity(), new DBAdapter() 
+		{
+			@Override
+			public void onDBShows(List<TvShow> shows)
+			{
+				localShows = shows;
+				setResults(merge(localShows, remoteShows));
+			}
+		}, search);
+		localTask.launch();
+	}
+	
+	//shows from our library first, then the ones we don't have yet
+	private ArrayList<TvShow> merge(List<TvShow> local, List<TvShow> remote)
+	{
+		ArrayList<TvShow> merged = new ArrayList<TvShow>(local);
+		Set<String> ids = new HashSet<String>();
+		for(TvShow s : local)
+			ids.add(s.tvdbId);
+		for(TvShow s : remote)
+		{
+			if(ids.add(s.tvdbId))
+				merged.add(s);
+		}
+		return merged;
+	}
+	
+	private void setResults(ArrayList<TvShow> shows)
+	{
+		this.shows = shows;
+		
+		if(adapter == null)
+		{
+			adapter = new ListSearchAdapter(getActivity(), shows);
+			lvSearch.setAdapter(adapter);
+		}
+		else
+			adapter.reloadData(shows);
+	}
+	
+	@Override
+	public void onDestroy()
+	{
+		handler.removeCallbacks(remoteSearch);
+		if(localTask != null)
+			localTask.cancel(false);
+		super.onDestroy();
 	}
 	
 	@Override
@@ -124,16 +294,20 @@ public class SearchFragment extends TraktFragment
 		return v;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void onRestoreState(Bundle savedInstanceState) 
 	{
-		shows = (ArrayList<TvShow>) savedInstanceState.getSerializable(TraktoidConstants.BUNDLE_RESULTS);
+		shows = EntityCodec.getShows(savedInstanceState, TraktoidConstants.BUNDLE_RESULTS);
+		if(shows == null)
+			shows = new ArrayList<TvShow>();
+		remoteShows = shows;
+		query = savedInstanceState.getString("query");
 	}
 
 	@Override
 	public void onSaveState(Bundle toSave) 
 	{
-		toSave.putSerializable(TraktoidConstants.BUNDLE_RESULTS, shows);
+		EntityCodec.putShows(toSave, TraktoidConstants.BUNDLE_RESULTS, shows);
+		toSave.putString("query", query);
 	}
 }
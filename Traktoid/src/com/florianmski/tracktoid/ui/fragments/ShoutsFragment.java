@@ -1,6 +1,7 @@
 package com.florianmski.tracktoid.ui.fragments;
 
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 
 import net.londatiga.android.ActionItem;
@@ -8,12 +9,13 @@ import net.londatiga.android.QuickAction;
 import net.londatiga.android.QuickAction.OnActionItemClickListener;
 import android.content.Context;
 import android.os.Bundle;
-import android.os.Handler;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.Button;
@@ -21,9 +23,16 @@ import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.Toast;
 
+import com.florianmski.tracktoid.EntityCodec;
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.TraktoidConstants;
 import com.florianmski.tracktoid.adapters.lists.ListShoutsAdapter;
+import com.florianmski.tracktoid.db.tasks.DBAdapter;
+import com.florianmski.tracktoid.db.tasks.DBInsertShoutTask;
+import com.florianmski.tracktoid.db.tasks.DBShoutsTask;
+import com.florianmski.tracktoid.trakt.TraktManager;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry.Receiver;
 import com.florianmski.tracktoid.trakt.tasks.get.ShoutsGetTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShoutsGetTask.ShoutsListener;
 import com.florianmski.tracktoid.trakt.tasks.post.PostTask;
@@ -32,11 +41,14 @@ import com.jakewharton.trakt.TraktApiBuilder;
 import com.jakewharton.trakt.entities.Response;
 import com.jakewharton.trakt.entities.Shout;
 import com.jakewharton.trakt.entities.TvShowEpisode;
+import com.jakewharton.trakt.entities.UserProfile;
 
 public class ShoutsFragment extends TraktFragment
 {
 	private final static int SPOILER = 0;
 	private final static int NO_SPOILER = 1;
+	//start loading the next page when we are this close to the end of the list
+	private final static int LOAD_THRESHOLD = 5;
 
 	private String tvdbId;
 	private TvShowEpisode episode;
@@ -50,6 +62,24 @@ public class ShoutsFragment extends TraktFragment
 	private ListShoutsAdapter adapter;
 	
 	private ArrayList<Shout> shouts;
+	private boolean hasMoreShouts = false;
+	//a page is being read from the cache or posted shouts are being written to it,
+	//one at a time so the offset of a page always matches what the cache contains
+	private boolean loadingShouts = false;
+	//posted while the cache was busy
+	private ArrayList<Shout> postedShouts = new ArrayList<Shout>();
+
+	private Receiver<List<Shout>> receiver = new Receiver<List<Shout>>()
+	{
+		@Override
+		public void onResult(List<Shout> shouts)
+		{
+			//the adapter appends the next pages to its list, keep the delivered one as it is
+			ShoutsFragment.this.shouts = new ArrayList<Shout>(shouts);
+			hasMoreShouts = shouts.size() == ShoutsGetTask.PAGE_SIZE;
+			setAdapter();
+		}
+	};
 
 	public static ShoutsFragment newInstance(Bundle args)
 	{
@@ -85,13 +115,10 @@ public class ShoutsFragment extends TraktFragment
 		else
 			setTitle("Shouts : " + episode.title);
 
-		if(savedInstanceState != null)
+		if(savedInstanceState != null && shouts != null)
 			setAdapter();
 		else
-		{
-			createGetShoutsTask();
-			commonTask.execute();
-		}
+			getShouts();
 
 		lvShouts.setOnItemClickListener(new OnItemClickListener() 
 		{
@@ -102,6 +129,19 @@ public class ShoutsFragment extends TraktFragment
 			}
 		});
 
+		lvShouts.setOnScrollListener(new OnScrollListener() 
+		{
+			@Override
+			public void onScrollStateChanged(AbsListView view, int scrollState) {}
+
+			@Override
+			public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) 
+			{
+				if(totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - LOAD_THRESHOLD)
+					loadNextShouts();
+			}
+		});
+
 		btnSend.setOnClickListener(new OnClickListener() 
 		{
 			@Override
@@ -139,11 +179,13 @@ public class ShoutsFragment extends TraktFragment
 			public void onItemClick(QuickAction source, int pos, int actionId) 
 			{
 				TraktApiBuilder<Response> builder;
+				final String text = edtShout.getText().toString().trim();
+				final boolean spoiler = actionId == SPOILER;
 
 				if(episode == null)
-					builder = tm.shoutService().show(Integer.valueOf(tvdbId)).shout(edtShout.getText().toString().trim()).spoiler(actionId == SPOILER);
+					builder = tm.shoutService().show(Integer.valueOf(tvdbId)).shout(text).spoiler(spoiler);
 				else
-					builder = tm.shoutService().episode(Integer.valueOf(tvdbId)).season(episode.season).episode(episode.number).shout(edtShout.getText().toString().trim()).spoiler(actionId == SPOILER);
+					builder = tm.shoutService().episode(Integer.valueOf(tvdbId)).season(episode.season).episode(episode.number).shout(text).spoiler(spoiler);
 
 				new PostTask(tm, ShoutsFragment.this, builder, new PostListener() 
 				{
@@ -151,41 +193,121 @@ public class ShoutsFragment extends TraktFragment
 					public void onComplete(Response r, boolean success) 
 					{
 						if(success)
-						{
-							adapter.clear();
-							createGetShoutsTask();
-
-							//post the task 3sec later to let trakt the time to save the shout
-							new Handler().postDelayed(new Runnable() 
-							{
-								@Override
-								public void run() 
-								{
-									commonTask.execute();
-								}
-							}, 3000);
-						}
+							addPostedShout(text, spoiler);
 					}
-				}).execute();
+				}).launch();
 			}
 		});
 
 
 	}
 
-	private void createGetShoutsTask()
+	private void getShouts()
 	{
 		getStatusView().show().text("Loading shouts,\nPlease wait...");
 
+		final String key = "shouts/" + ShoutsGetTask.getTarget(tvdbId, episode);
+		//the previous instance may have left a request running
+		if(TaskRegistry.attach(key, this, receiver))
+			return;
+
 		commonTask = new ShoutsGetTask(tm, this, episode, tvdbId, new ShoutsListener() 
 		{
 			@Override
 			public void onShouts(List<Shout> shouts) 
 			{
-				ShoutsFragment.this.shouts = (ArrayList<Shout>) shouts;
-				setAdapter();
+				TaskRegistry.deliver(key, shouts);
 			}
 		});
+		TaskRegistry.launch(key, commonTask, this, receiver);
+	}
+
+	//next page comes from the cache filled by ShoutsGetTask
+	private void loadNextShouts()
+	{
+		if(!hasMoreShouts || loadingShouts || adapter == null)
+			return;
+
+		loadingShouts = true;
+		new DBShoutsTask(getActivity(), new DBAdapter() 
+		{
+			@Override
+			public void onDBShouts(List<Shout> shouts) 
+			{
+				loadingShouts = false;
+				//null if the read failed, the next scroll will try again
+				if(shouts != null)
+				{
+					hasMoreShouts = shouts.size() == ShoutsGetTask.PAGE_SIZE;
+					adapter.addShouts(shouts);
+				}
+				storePostedShouts();
+			}
+		}, ShoutsGetTask.getTarget(tvdbId, episode), adapter.getCount(), ShoutsGetTask.PAGE_SIZE).launch();
+	}
+
+	//trakt needs some time before returning a new shout, so display it right now instead of refetching everything
+	private void addPostedShout(String text, boolean spoiler)
+	{
+		Shout s = new Shout();
+		s.shout = text;
+		s.spoiler = spoiler;
+		s.inserted = Calendar.getInstance();
+		s.user = new UserProfile();
+		s.user.username = TraktManager.getUsername();
+
+		//reuse our avatar if we already shouted here
+		if(shouts != null)
+		{
+			for(Shout old : shouts)
+			{
+				if(old.user != null && s.user.username.equals(old.user.username))
+				{
+					s.user.avatar = old.user.avatar;
+					break;
+				}
+			}
+		}
+
+		edtShout.setText(null);
+		postedShouts.add(s);
+		storePostedShouts();
+	}
+
+	//the shouts are added to the list once they are in the cache, so the next page is read at the right offset
+	private void storePostedShouts()
+	{
+		if(loadingShouts || postedShouts.isEmpty())
+			return;
+
+		loadingShouts = true;
+		new DBInsertShoutTask(getActivity(), new DBAdapter() 
+		{
+			@Override
+			public void onDBShouts(List<Shout> shouts) 
+			{
+				loadingShouts = false;
+				for(Shout s : shouts)
+					showPostedShout(s);
+				storePostedShouts();
+			}
+		}, ShoutsGetTask.getTarget(tvdbId, episode), new ArrayList<Shout>(postedShouts)).launch();
+		postedShouts.clear();
+	}
+
+	private void showPostedShout(Shout s)
+	{
+		if(adapter == null || shouts == null)
+		{
+			shouts = new ArrayList<Shout>();
+			shouts.add(s);
+			setAdapter();
+		}
+		else
+		{
+			adapter.addShout(s);
+			getStatusView().hide().text(null);
+		}
 	}
 	
 	private void setAdapter()
@@ -221,12 +343,14 @@ public class ShoutsFragment extends TraktFragment
 	@Override
 	public void onRestoreState(Bundle savedInstanceState) 
 	{
-		shouts = (ArrayList<Shout>) savedInstanceState.get(TraktoidConstants.BUNDLE_RESULTS);
+		shouts = EntityCodec.getShouts(savedInstanceState, TraktoidConstants.BUNDLE_RESULTS);
+		hasMoreShouts = savedInstanceState.getBoolean("hasMoreShouts");
 	}
 
 	@Override
 	public void onSaveState(Bundle toSave) 
 	{
-		toSave.putSerializable(TraktoidConstants.BUNDLE_RESULTS, shouts);
+		EntityCodec.putShouts(toSave, TraktoidConstants.BUNDLE_RESULTS, shouts);
+		toSave.putBoolean("hasMoreShouts", hasMoreShouts);
 	}
 }
@@ -1,11 +1,15 @@
 package com.florianmski.tracktoid.ui.fragments;
 
+import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 
 import com.florianmski.tracktoid.StatusView;
+import com.florianmski.tracktoid.trakt.ChangeBus;
+import com.florianmski.tracktoid.trakt.ShowChange;
 import com.florianmski.tracktoid.trakt.TraktManager;
 import com.florianmski.tracktoid.trakt.TraktManager.TraktListener;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry;
 import com.florianmski.tracktoid.trakt.tasks.TraktTask;
 import com.jakewharton.trakt.entities.TvShow;
 
@@ -37,12 +41,34 @@ public abstract class TraktFragment extends BaseFragment implements TraktListene
 	{
 		//remove observer
 		tm.removeObserver(this);
+		//registered requests keep running through a rotation, the next instance will attach to them
+		TaskRegistry.detach(this, !isRecreated());
 		//cancel a task which is useless outside this activity
-		if(commonTask != null)
+		if(commonTask != null && !TaskRegistry.isRegistered(commonTask))
 			commonTask.cancel(true);
 		super.onDestroy();
 	}
 
+	//destroyed to be recreated right away (rotation...), only known on honeycomb+, older devices cancel their requests
+	private boolean isRecreated()
+	{
+		return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && getActivity() != null && getActivity().isChangingConfigurations();
+	}
+
+	/**
+	 * Receive the show changes of this topic (see ChangeBus), 
+	 * everything is unsubscribed when the fragment is destroyed
+	 */
+	protected void subscribe(String topic)
+	{
+		ChangeBus.getInstance().subscribe(topic, this);
+	}
+
+	protected void unsubscribe(String topic)
+	{
+		ChangeBus.getInstance().unsubscribe(topic, this);
+	}
+
 	protected void setTitle(String title)
 	{
 		getSherlockActivity().getSupportActionBar().setTitle(title);
@@ -82,5 +108,5 @@ public abstract class TraktFragment extends BaseFragment implements TraktListene
 	public void onShowRemoved(TvShow show) {}
 
 	@Override
-	public void onShowUpdated(TvShow show) {}
+	public void onShowUpdated(ShowChange change) {}
 }
@@ -1,7 +1,9 @@
 package com.florianmski.tracktoid.ui.fragments;
 
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
+import android.content.Context;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -10,8 +12,15 @@ import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.AdapterView.OnItemSelectedListener;
 
+import com.florianmski.tracktoid.EntityCodec;
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.TraktoidConstants;
+import com.florianmski.tracktoid.Utils;
+import com.florianmski.tracktoid.services.TrendingService;
+import com.florianmski.tracktoid.tasks.BaseTask;
+import com.florianmski.tracktoid.tasks.TaskExecutors;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry.Receiver;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask;
 import com.florianmski.tracktoid.trakt.tasks.get.ShowsTask.ShowsListener;
 import com.florianmski.tracktoid.ui.fragments.pagers.items.ShowFragment;
@@ -21,10 +30,26 @@ import com.jakewharton.trakt.entities.TvShow;
 
 public class TrendingFragment extends TraktFragment
 {
+	private final static String TASK_KEY = "trending";
+
 	private CoverFlow cf;
 	//	private TextView tvShowTitle;
 	private ArrayList<TvShow> shows;
 
+	private Receiver<ArrayList<TvShow>> receiver = new Receiver<ArrayList<TvShow>>()
+	{
+		@Override
+		public void onResult(ArrayList<TvShow> shows)
+		{
+			//don't yank the cover flow under the user's finger, the new snapshot will be used next time
+			if(TrendingFragment.this.shows == null)
+			{
+				TrendingFragment.this.shows = shows;
+				setAdapter();
+			}
+		}
+	};
+
 	public static TrendingFragment newInstance(Bundle args)
 	{
 		TrendingFragment f = new TrendingFragment();
@@ -44,8 +69,6 @@ public class TrendingFragment extends TraktFragment
 	{
 		super.onActivityCreated(savedInstanceState);
 
-		getStatusView().show().text("Retrieving trending shows,\nPlease wait...");
-		
 		cf.setOnItemSelectedListener(new OnItemSelectedListener() 
 		{
 			@Override
@@ -68,21 +91,98 @@ public class TrendingFragment extends TraktFragment
 			}
 		});
 
-		if(savedInstanceState == null)
+		if(savedInstanceState != null && shows != null)
+		{
+			setAdapter();
+			//the refresh started by the previous instance still has a snapshot to save
+			TaskRegistry.attach(TASK_KEY, this, receiver);
+		}
+		else
+		{
+			getStatusView().show().text("Retrieving trending shows,\nPlease wait...");
+			//the previous instance may have left a request running
+			if(!TaskRegistry.attach(TASK_KEY, this, receiver))
+				loadSnapshot();
+		}
+	}
+
+	//display the last snapshot right away and only ask trakt if it is missing or too old
+	private void loadSnapshot()
+	{
+		final Context context = getActivity().getApplicationContext();
+		new BaseTask<Void, Void, byte[]>()
 		{
-			commonTask = new ShowsTask(tm, this, new ShowsListener() 
+			private boolean stale;
+
+			@Override
+			protected byte[] runInBackground(Void... params)
 			{
-				@Override
-				public void onShows(ArrayList<TvShow> shows) 
+				stale = TrendingService.isStale(context);
+				return TrendingService.readSnapshot(context);
+			}
+
+			@Override
+			protected void onPostExecute(byte[] bytes)
+			{
+				if(Utils.isActivityFinished(getActivity()))
+					return;
+
+				if(bytes == null)
+					refresh();
+				else
+					decodeSnapshot(bytes, stale);
+			}
+		}.launch();
+	}
+
+	//decoding doesn't need to wait behind db tasks
+	private void decodeSnapshot(final byte[] bytes, final boolean stale)
+	{
+		new BaseTask<Void, Void, ArrayList<TvShow>>()
+		{
+			@Override
+			protected Executor getExecutor()
+			{
+				return TaskExecutors.CPU;
+			}
+
+			@Override
+			protected ArrayList<TvShow> runInBackground(Void... params)
+			{
+				return TrendingService.decodeSnapshot(bytes);
+			}
+
+			@Override
+			protected void onPostExecute(ArrayList<TvShow> snapshot)
+			{
+				if(Utils.isActivityFinished(getActivity()))
+					return;
+
+				if(snapshot != null)
 				{
-					TrendingFragment.this.shows = shows;
+					shows = snapshot;
 					setAdapter();
 				}
-			}, tm.showService().trending(), false);
-			commonTask.execute();
-		}
-		else
-			setAdapter();
+
+				if(snapshot == null || stale)
+					refresh();
+			}
+		}.launch();
+	}
+
+	private void refresh()
+	{
+		final Context context = getActivity().getApplicationContext();
+		commonTask = new ShowsTask(tm, this, new ShowsListener() 
+		{
+			@Override
+			public void onShows(ArrayList<TvShow> shows) 
+			{
+				TrendingService.update(context, shows);
+				TaskRegistry.deliver(TASK_KEY, shows);
+			}
+		}, tm.showService().trending(), false).silentConnectionError(shows != null);
+		TaskRegistry.launch(TASK_KEY, commonTask, this, receiver);
 	}
 
 	private void setAdapter()
@@ -107,16 +207,15 @@ public class TrendingFragment extends TraktFragment
 		return v;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void onRestoreState(Bundle savedInstanceState) 
 	{
-		shows = (ArrayList<TvShow>) savedInstanceState.get(TraktoidConstants.BUNDLE_RESULTS);
+		shows = EntityCodec.getShows(savedInstanceState, TraktoidConstants.BUNDLE_RESULTS);
 	}
 
 	@Override
 	public void onSaveState(Bundle toSave) 
 	{
-		toSave.putSerializable(TraktoidConstants.BUNDLE_RESULTS, shows);
+		EntityCodec.putShows(toSave, TraktoidConstants.BUNDLE_RESULTS, shows);
 	}
 }
\ No newline at end of file
@@ -4,14 +4,28 @@ import java.util.ArrayList;
 
 import android.os.Bundle;
 import com.florianmski.tracktoid.adapters.pagers.PagerCalendarAdapter;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry;
+import com.florianmski.tracktoid.trakt.tasks.TaskRegistry.Receiver;
 import com.florianmski.tracktoid.trakt.tasks.get.CalendarTask;
 import com.florianmski.tracktoid.trakt.tasks.get.CalendarTask.CalendarListener;
 import com.jakewharton.trakt.entities.CalendarDate;
 
 public class CalendarPagerFragment extends PagerFragment
 {
+	private final static String TASK_KEY = "calendar";
+
 	ArrayList<ArrayList<CalendarDate>> calendars;
 	
+	private Receiver<ArrayList<ArrayList<CalendarDate>>> receiver = new Receiver<ArrayList<ArrayList<CalendarDate>>>()
+	{
+		@Override
+		public void onResult(ArrayList<ArrayList<CalendarDate>> calendars)
+		{
+			CalendarPagerFragment.this.calendars = calendars;
+			createAdapter();
+		}
+	};
+	
 	public static CalendarPagerFragment newInstance(Bundle args)
 	{
 		CalendarPagerFragment f = new CalendarPagerFragment();
@@ -41,18 +55,22 @@ public class CalendarPagerFragment extends PagerFragment
 
 		getStatusView().show().text("Retrieving calendar,\nPlease wait...");
 
-		commonTask = new CalendarTask(tm, this, new CalendarListener() 
+		//the previous instance may have left a request running
+		if(TaskRegistry.attach(TASK_KEY, this, receiver))
+			return;
+
+		if(savedInstanceState == null)
 		{
-			@Override
-			public void onCalendar(ArrayList<ArrayList<CalendarDate>> calendars) 
+			commonTask = new CalendarTask(tm, this, new CalendarListener() 
 			{
-				CalendarPagerFragment.this.calendars = calendars;
-				createAdapter();
-			}
-		});
-		
-		if(savedInstanceState == null)
-			commonTask.execute();
+				@Override
+				public void onCalendar(ArrayList<ArrayList<CalendarDate>> calendars) 
+				{
+					TaskRegistry.deliver(TASK_KEY, calendars);
+				}
+			});
+			TaskRegistry.launch(TASK_KEY, commonTask, this, receiver);
+		}
 		else
 		{
 			//create empty arraylist to create a pageradapter that will be filled by calendarfragment (they saved their states)
@@ -15,6 +15,8 @@ import com.florianmski.tracktoid.Utils;
 import com.florianmski.tracktoid.adapters.pagers.PagerEpisodeAdapter;
 import com.florianmski.tracktoid.db.tasks.DBAdapter;
 import com.florianmski.tracktoid.db.tasks.DBEpisodesTask;
+import com.florianmski.tracktoid.trakt.ChangeBus;
+import com.florianmski.tracktoid.trakt.ShowChange;
 import com.florianmski.tracktoid.trakt.tasks.post.WatchedEpisodesTask;
 import com.florianmski.tracktoid.ui.activities.phone.ShoutsActivity;
 import com.jakewharton.trakt.entities.TvShow;
@@ -59,6 +61,7 @@ public class EpisodePagerFragment extends PagerFragment
 		setSubtitle(getArguments().getString(TraktoidConstants.BUNDLE_TITLE));
 
 		tvdbId = getArguments().getString(TraktoidConstants.BUNDLE_TVDB_ID);
+		subscribe(ChangeBus.showTopic(tvdbId));
 		seasonId = getArguments().getString(TraktoidConstants.BUNDLE_SEASON_ID);
 
 		@SuppressWarnings("unchecked")
@@ -78,7 +81,7 @@ public class EpisodePagerFragment extends PagerFragment
 					
 					initPagerFragment(adapter);
 				}
-			}, seasonId).execute();
+			}, seasonId).launch();
 		else
 		{
 			adapter = new PagerEpisodeAdapter(episodes, tvdbId, getFragmentManager());
@@ -133,9 +136,9 @@ public class EpisodePagerFragment extends PagerFragment
 	}
 	
 	@Override
-	public void onShowUpdated(TvShow show) 
+	public void onShowUpdated(ShowChange change) 
 	{
-		if(show.tvdbId.equals(tvdbId) && adapter != null && seasonId != null)
+		if(change.hasSeasonsChanged() && adapter != null && seasonId != null)
 			new DBEpisodesTask(getActivity(), new DBAdapter()
 			{
 				@Override
@@ -144,14 +147,13 @@ public class EpisodePagerFragment extends PagerFragment
 					((PagerEpisodeAdapter)adapter).reloadData(episodes);
 					getSherlockActivity().invalidateOptionsMenu();
 				}
-			}, seasonId).execute();
+			}, seasonId).launch();
 	}
 
 	@Override
 	public void onShowRemoved(TvShow show)
 	{
-		if(show.tvdbId.equals(tvdbId))
-			getActivity().finish();
+		getActivity().finish();
 	}
 
 	@Override
@@ -3,7 +3,9 @@ package com.florianmski.tracktoid.ui.fragments.pagers;
 import java.util.List;
 import java.util.Map;
 
+import android.content.Context;
 import android.os.Bundle;
+import android.support.v4.app.FragmentManager;
 import android.widget.Toast;
 
 import com.actionbarsherlock.view.Menu;
@@ -15,7 +17,12 @@ import com.florianmski.tracktoid.Utils;
 import com.florianmski.tracktoid.adapters.lists.ListEpisodeAdapter;
 import com.florianmski.tracktoid.adapters.pagers.PagerSeasonAdapter;
 import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.tasks.DBAdapter;
+import com.florianmski.tracktoid.db.tasks.DBSeasonsTask;
 import com.florianmski.tracktoid.image.Image;
+import com.florianmski.tracktoid.tasks.BaseTask;
+import com.florianmski.tracktoid.trakt.ChangeBus;
+import com.florianmski.tracktoid.trakt.ShowChange;
 import com.florianmski.tracktoid.trakt.tasks.post.WatchedEpisodesTask;
 import com.jakewharton.trakt.entities.TvShow;
 import com.jakewharton.trakt.entities.TvShowSeason;
@@ -56,6 +63,7 @@ public class SeasonPagerFragment extends PagerFragment
 		setTitle(getArguments().getString(TraktoidConstants.BUNDLE_TITLE));
 		
 		tvdbId = getArguments().getString(TraktoidConstants.BUNDLE_TVDB_ID);
+		subscribe(ChangeBus.showTopic(tvdbId));
 
 //		new DBSeasonsTask(this, new DBAdapter() 
 //		{
@@ -71,38 +79,44 @@ public class SeasonPagerFragment extends PagerFragment
 		setData();
 	}
 	
-	//don't know why but using this thread is like 3 time faster than using an asynctask doing the same thing (???)
+	//the adapter is built here too, off the ui thread
 	public void setData()
 	{
-		new Thread()
+		final String tvdbId = getArguments().getString(TraktoidConstants.BUNDLE_TVDB_ID);
+		final Context context = getActivity().getApplicationContext();
+		final FragmentManager fm = getFragmentManager();
+		new BaseTask<Void, Void, PagerSeasonAdapter>()
 		{
+			private List<TvShowSeason> seasons;
+
 			@Override
-			public void run()
+			protected PagerSeasonAdapter runInBackground(Void... params)
 			{
-				DatabaseWrapper dbw = new DatabaseWrapper(getActivity());
+				DatabaseWrapper dbw = new DatabaseWrapper(context);
 				dbw.open();
-				String tvdb_id = getArguments().getString(TraktoidConstants.BUNDLE_TVDB_ID);
-				List<TvShowSeason> seasons = dbw.getSeasons(tvdb_id, true, true);
-				SeasonPagerFragment.this.seasons = seasons;
+				seasons = dbw.getSeasons(tvdbId, true, true);
 				dbw.close();
 
-				adapter = new PagerSeasonAdapter(seasons, tvdb_id, getFragmentManager(), getActivity().getApplicationContext());
+				return new PagerSeasonAdapter(seasons, tvdbId, fm, context);
+			}
 
-				getActivity().runOnUiThread(new Runnable() 
-				{
-					@Override
-					public void run() 
-					{
-						if(((PagerSeasonAdapter)adapter).isEmpty())
-							getStatusView().hide().text("No seasons, this is strange...");
-						else
-							getStatusView().hide().text(null);
-						
-						initPagerFragment(adapter);
-					}
-				});
+			@Override
+			protected void onPostExecute(PagerSeasonAdapter result)
+			{
+				if(Utils.isActivityFinished(getActivity()))
+					return;
+
+				SeasonPagerFragment.this.seasons = seasons;
+				adapter = result;
+
+				if(result.isEmpty())
+					getStatusView().hide().text("No seasons, this is strange...");
+				else
+					getStatusView().hide().text(null);
+
+				initPagerFragment(adapter);
 			}
-		}.start();
+		}.launch();
 	}
 
 	@Override
@@ -170,17 +184,25 @@ public class SeasonPagerFragment extends PagerFragment
 	}
 	
 	@Override
-	public void onShowUpdated(TvShow show)
+	public void onShowUpdated(ShowChange change)
 	{
-		if(show.tvdbId.equals(tvdbId) && adapter != null && show.seasons != null)
-			((PagerSeasonAdapter) adapter).reloadData(show.seasons);
+		//we display the episodes, they are not part of the change
+		if(adapter != null && change.hasSeasonsChanged())
+			new DBSeasonsTask(getActivity(), new DBAdapter() 
+			{
+				@Override
+				public void onDBSeasons(List<TvShowSeason> seasons) 
+				{
+					SeasonPagerFragment.this.seasons = seasons;
+					((PagerSeasonAdapter) adapter).reloadData(seasons);
+				}
+			}, tvdbId, true, true).launch();
 	}
 
 	@Override
 	public void onShowRemoved(TvShow show)
 	{
-		if(show.tvdbId.equals(tvdbId))
-			getActivity().finish();
+		getActivity().finish();
 	}
 
 	public void checkBoxSelection(boolean checked)
@@ -2,10 +2,14 @@ package com.florianmski.tracktoid.ui.fragments.pagers;
 
 import java.util.List;
 
+import android.content.Context;
 import android.os.Bundle;
 
 import com.florianmski.tracktoid.TraktoidConstants;
+import com.florianmski.tracktoid.Utils;
 import com.florianmski.tracktoid.adapters.pagers.PagerShowAdapter;
+import com.florianmski.tracktoid.db.Library;
+import com.florianmski.tracktoid.tasks.BaseTask;
 import com.jakewharton.trakt.entities.TvShow;
 
 public class ShowPagerFragment extends PagerFragment
@@ -47,31 +51,35 @@ public class ShowPagerFragment extends PagerFragment
 	
 	public void setData()
 	{
-		new Thread()
+		final Bundle args = getArguments();
+		final Context context = getActivity().getApplicationContext();
+		new BaseTask<Void, Void, List<TvShow>>()
 		{
 			@Override
 			@SuppressWarnings("unchecked")
-			public void run()
+			protected List<TvShow> runInBackground(Void... params)
 			{
-				final List<TvShow> shows = (List<TvShow>)getArguments().getSerializable(TraktoidConstants.BUNDLE_RESULTS);
+				//load the library here, PagerShowAdapter reads it on the ui thread
+				Library.get(context);
+				return (List<TvShow>)args.getSerializable(TraktoidConstants.BUNDLE_RESULTS);
+			}
+
+			@Override
+			protected void onPostExecute(List<TvShow> shows)
+			{
+				if(Utils.isActivityFinished(getActivity()))
+					return;
+
+				adapter = new PagerShowAdapter(shows, getFragmentManager(), getActivity());
+
+				if(((PagerShowAdapter)adapter).isEmpty())
+					getStatusView().hide().text("No shows, this is strange...");
+				else
+					getStatusView().hide().text(null);
 
-				getActivity().runOnUiThread(new Runnable() 
-				{
-					@Override
-					public void run() 
-					{
-						adapter = new PagerShowAdapter(shows, getFragmentManager(), getActivity());
-						
-						if(((PagerShowAdapter)adapter).isEmpty())
-							getStatusView().hide().text("No shows, this is strange...");
-						else
-							getStatusView().hide().text(null);
-						
-						initPagerFragment(adapter);
-					}
-				});
+				initPagerFragment(adapter);
 			}
-		}.start();
+		}.launch();
 	}
 
 //	@Override
@@ -69,7 +69,7 @@ public class CalendarFragment extends PagerItemFragment
 					else
 						getStatusView().hide().text(null);
 				}
-			}).execute();
+			}).launch();
 		}
 		//online calendar
 		else
@@ -22,7 +22,7 @@ import com.androidquery.AQuery;
 import com.androidquery.callback.BitmapAjaxCallback;
 import com.florianmski.tracktoid.R;
 import com.florianmski.tracktoid.TraktoidConstants;
-import com.florianmski.tracktoid.db.DatabaseWrapper;
+import com.florianmski.tracktoid.db.Library;
 import com.florianmski.tracktoid.image.Image;
 import com.florianmski.tracktoid.trakt.tasks.get.UpdateShowsTask;
 import com.florianmski.tracktoid.ui.activities.phone.ShoutsActivity;
@@ -64,10 +64,7 @@ public class ShowFragment extends PagerItemFragment
 	{
 		super.onActivityCreated(savedInstanceState);
 
-		DatabaseWrapper dbw = new DatabaseWrapper(getActivity());
-		dbw.open();
-		existsInDb = dbw.showExist(s.tvdbId);
-		dbw.close();
+		existsInDb = Library.get(getActivity()).contains(s.tvdbId);
 		getSherlockActivity().invalidateOptionsMenu();
 	}
 
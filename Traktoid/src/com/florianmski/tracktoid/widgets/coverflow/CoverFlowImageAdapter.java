@@ -129,7 +129,8 @@ public class CoverFlowImageAdapter extends BaseAdapter
 		};
 
 		Image i = new Image(show.tvdbId, show.images.poster, Image.POSTER);
-		cb.url(i.getUrl()).fileCache(false).memCache(true);
+		//posters of the trending shows are downloaded in advance by TrendingService
+		cb.url(i.getUrl()).fileCache(true).memCache(true);
 		aq.id(imageView).image(cb);
 
 		return imageView;
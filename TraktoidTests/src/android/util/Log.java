@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+/**
+ * Replaces the android.jar stub (which throws) when the tests run on a plain jvm, logs go to stdout.
+ */
+public final class Log
+{
+	private Log() {}
+
+	public static int d(String tag, String msg)
+	{
+		return println("D", tag, msg, null);
+	}
+
+	public static int i(String tag, String msg)
+	{
+		return println("I", tag, msg, null);
+	}
+
+	public static int w(String tag, String msg)
+	{
+		return println("W", tag, msg, null);
+	}
+
+	public static int w(String tag, String msg, Throwable tr)
+	{
+		return println("W", tag, msg, tr);
+	}
+
+	public static int e(String tag, String msg)
+	{
+		return println("E", tag, msg, null);
+	}
+
+	public static int e(String tag, String msg, Throwable tr)
+	{
+		return println("E", tag, msg, tr);
+	}
+
+	private static int println(String level, String tag, String msg, Throwable tr)
+	{
+		System.out.println(level + "/" + tag + ": " + msg + (tr == null ? "" : " " + tr));
+		return 0;
+	}
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jakewharton.trakt.entities.Images;
+import com.jakewharton.trakt.entities.Ratings;
+import com.jakewharton.trakt.entities.Shout;
+import com.jakewharton.trakt.entities.TvShow;
+import com.jakewharton.trakt.entities.TvShowEpisode;
+import com.jakewharton.trakt.entities.TvShowSeason;
+import com.jakewharton.trakt.entities.TvShowSeason.Episodes;
+import com.jakewharton.trakt.entities.UserProfile;
+import com.jakewharton.trakt.enumerations.DayOfTheWeek;
+import com.jakewharton.trakt.enumerations.Rating;
+
+public class EntityCodecTest
+{
+	@Test
+	public void showRoundTrip() throws IOException
+	{
+		TvShow s = newShow(1, 3, 10);
+
+		TvShow read = EntityCodec.readShow(new DataInputStream(new ByteArrayInputStream(encode(s))));
+
+		assertShowEquals(s, read);
+	}
+
+	@Test
+	public void unknownValuesStayUnknown() throws IOException
+	{
+		TvShow s = new TvShow();
+		s.title = "Unknown";
+		s.tvdbId = "1";
+		s.seasons = new ArrayList<TvShowSeason>();
+		TvShowSeason season = new TvShowSeason();
+		season.episodes = new Episodes();
+		season.episodes.episodes = new ArrayList<TvShowEpisode>();
+		season.episodes.episodes.add(new TvShowEpisode());
+		s.seasons.add(season);
+		s.ratings = new Ratings();
+
+		TvShow read = EntityCodec.readShow(new DataInputStream(new ByteArrayInputStream(encode(s))));
+
+		assertNull(read.year);
+		assertNull(read.runtime);
+		assertNull(read.progress);
+		assertNull(read.inWatchlist);
+		assertNull(read.firstAired);
+		assertNull(read.airDay);
+		assertNull(read.rating);
+		assertNull(read.images);
+		assertNull(read.ratings.percentage);
+		assertNull(read.seasons.get(0).season);
+		assertNull(read.seasons.get(0).episodes.count);
+		TvShowEpisode e = read.seasons.get(0).episodes.episodes.get(0);
+		assertNull(e.season);
+		assertNull(e.number);
+		assertNull(e.watched);
+	}
+
+	@Test
+	public void falseIsNotUnknown() throws IOException
+	{
+		TvShow s = newShow(1, 0, 0);
+		s.inWatchlist = false;
+
+		TvShow read = EntityCodec.readShow(new DataInputStream(new ByteArrayInputStream(encode(s))));
+
+		assertEquals(Boolean.FALSE, read.inWatchlist);
+	}
+
+	@Test
+	public void shoutsRoundTrip() throws IOException
+	{
+		List<Shout> shouts = new ArrayList<Shout>();
+		for(int i = 0; i < 5; i++)
+			shouts.add(newShout(i));
+		shouts.add(new Shout());
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		EntityCodec.writeShouts(new DataOutputStream(bos), shouts);
+		List<Shout> read = EntityCodec.readShouts(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+
+		assertEquals(shouts.size(), read.size());
+		for(int i = 0; i < shouts.size(); i++)
+		{
+			Shout expected = shouts.get(i);
+			Shout actual = read.get(i);
+			assertEquals(expected.shout, actual.shout);
+			assertEquals(expected.spoiler, actual.spoiler);
+			assertEquals(expected.inserted == null ? null : expected.inserted.getTime(), actual.inserted == null ? null : actual.inserted.getTime());
+			assertEquals(expected.user == null ? null : expected.user.username, actual.user == null ? null : actual.user.username);
+			assertEquals(expected.user == null ? null : expected.user.avatar, actual.user == null ? null : actual.user.avatar);
+		}
+	}
+
+	@Test
+	public void snapshotOfAnotherVersionIsIgnored() throws IOException
+	{
+		byte[] bytes = new byte[]{(byte) 0xff, 0, 0, 0, 0};
+
+		assertNull(EntityCodec.readShowsSnapshot(new DataInputStream(new ByteArrayInputStream(bytes))));
+	}
+
+	/**
+	 * What a rotation of the library screen costs: 50 shows of 5 seasons of 20 episodes.
+	 */
+	@Test
+	public void benchmarkAgainstJavaSerialization() throws Exception
+	{
+		ArrayList<TvShow> shows = new ArrayList<TvShow>();
+		for(int i = 0; i < 50; i++)
+			shows.add(newShow(i, 5, 20));
+
+		//warm up both
+		for(int i = 0; i < 20; i++)
+		{
+			decodeShows(encodeShows(shows));
+			deserialize(serialize(shows));
+		}
+
+		final int runs = 50;
+
+		long start = System.nanoTime();
+		byte[] codec = null;
+		for(int i = 0; i < runs; i++)
+		{
+			codec = encodeShows(shows);
+			decodeShows(codec);
+		}
+		long codecTime = (System.nanoTime() - start) / runs;
+
+		start = System.nanoTime();
+		byte[] serialized = null;
+		for(int i = 0; i < runs; i++)
+		{
+			serialized = serialize(shows);
+			deserialize(serialized);
+		}
+		long serializationTime = (System.nanoTime() - start) / runs;
+
+		System.out.println("EntityCodec: " + codec.length + " bytes, " + codecTime / 1000 + "us by round trip");
+		System.out.println("Java serialization: " + serialized.length + " bytes, " + serializationTime / 1000 + "us by round trip");
+
+		assertShowEquals(shows.get(49), decodeShows(codec).get(49));
+		assertTrue(codec.length < serialized.length);
+	}
+
+	private static byte[] encode(TvShow s) throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		EntityCodec.writeShow(new DataOutputStream(bos), s);
+		return bos.toByteArray();
+	}
+
+	private static byte[] encodeShows(List<TvShow> shows) throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		EntityCodec.writeShowsSnapshot(new DataOutputStream(bos), shows);
+		return bos.toByteArray();
+	}
+
+	private static List<TvShow> decodeShows(byte[] bytes) throws IOException
+	{
+		return EntityCodec.readShowsSnapshot(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	private static byte[] serialize(ArrayList<TvShow> shows) throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject(shows);
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws Exception
+	{
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try
+		{
+			return in.readObject();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static TvShow newShow(int i, int nbSeasons, int nbEpisodes)
+	{
+		TvShow s = new TvShow();
+		s.title = "Show " + i;
+		s.year = 2000 + i;
+		s.url = "http://trakt.tv/show/show-" + i;
+		s.firstAired = new Date(1000000000000L + i);
+		s.country = "United States";
+		s.overview = "A show about the number " + i + ", with some accents: éèê";
+		s.runtime = 42;
+		s.network = "HBO";
+		s.airDay = DayOfTheWeek.Sunday;
+		s.airTime = "9:00pm";
+		s.certification = "TV-MA";
+		s.imdbId = "tt" + i;
+		s.tvdbId = String.valueOf(70000 + i);
+		s.tvrageId = String.valueOf(i);
+		s.images = newImages(i);
+		s.ratings = newRatings(i);
+		s.rating = Rating.Love;
+		s.inWatchlist = true;
+		s.progress = 50;
+
+		s.seasons = new ArrayList<TvShowSeason>();
+		for(int j = nbSeasons; j > 0; j--)
+		{
+			TvShowSeason season = new TvShowSeason();
+			season.season = j;
+			season.url = s.url + "/season/" + j;
+			season.episodesWatched = nbEpisodes / 2;
+			season.episodes = new Episodes();
+			season.episodes.count = nbEpisodes;
+			season.episodes.episodes = new ArrayList<TvShowEpisode>();
+			for(int k = 1; k <= nbEpisodes; k++)
+			{
+				TvShowEpisode e = new TvShowEpisode();
+				e.season = j;
+				e.number = k;
+				e.title = "Episode " + k;
+				e.overview = "What happens in episode " + k + " of season " + j;
+				e.url = season.url + "/episode/" + k;
+				e.firstAired = new Date(1000000000000L + k);
+				e.images = newImages(k);
+				e.ratings = newRatings(k);
+				e.watched = k % 2 == 0;
+				season.episodes.episodes.add(e);
+			}
+			s.seasons.add(season);
+		}
+
+		return s;
+	}
+
+	private static Images newImages(int i)
+	{
+		Images images = new Images();
+		images.poster = "http://trakt.us/images/posters/" + i + ".jpg";
+		images.fanart = "http://trakt.us/images/fanart/" + i + ".jpg";
+		images.screen = null;
+		return images;
+	}
+
+	private static Ratings newRatings(int i)
+	{
+		Ratings ratings = new Ratings();
+		ratings.percentage = i % 100;
+		ratings.votes = i * 10;
+		ratings.loved = i * 8;
+		ratings.hated = i * 2;
+		return ratings;
+	}
+
+	private static Shout newShout(int i)
+	{
+		Shout s = new Shout();
+		s.shout = "Shout " + i;
+		s.spoiler = i % 2 == 0;
+		s.inserted = Calendar.getInstance();
+		s.inserted.setTimeInMillis(1000000000000L + i * 1000);
+		s.user = new UserProfile();
+		s.user.username = "user" + i;
+		s.user.avatar = i == 0 ? null : "http://trakt.us/images/avatars/" + i + ".jpg";
+		return s;
+	}
+
+	private static void assertShowEquals(TvShow expected, TvShow actual)
+	{
+		assertEquals(expected.title, actual.title);
+		assertEquals(expected.year, actual.year);
+		assertEquals(expected.url, actual.url);
+		assertEquals(expected.firstAired, actual.firstAired);
+		assertEquals(expected.country, actual.country);
+		assertEquals(expected.overview, actual.overview);
+		assertEquals(expected.runtime, actual.runtime);
+		assertEquals(expected.network, actual.network);
+		assertEquals(expected.airDay, actual.airDay);
+		assertEquals(expected.airTime, actual.airTime);
+		assertEquals(expected.certification, actual.certification);
+		assertEquals(expected.imdbId, actual.imdbId);
+		assertEquals(expected.tvdbId, actual.tvdbId);
+		assertEquals(expected.tvrageId, actual.tvrageId);
+		assertImagesEquals(expected.images, actual.images);
+		assertRatingsEquals(expected.ratings, actual.ratings);
+		assertEquals(expected.rating, actual.rating);
+		assertEquals(expected.inWatchlist, actual.inWatchlist);
+		assertEquals(expected.progress, actual.progress);
+
+		assertEquals(expected.seasons.size(), actual.seasons.size());
+		for(int i = 0; i < expected.seasons.size(); i++)
+		{
+			TvShowSeason es = expected.seasons.get(i);
+			TvShowSeason as = actual.seasons.get(i);
+			assertEquals(es.season, as.season);
+			assertEquals(es.url, as.url);
+			assertEquals(es.episodesWatched, as.episodesWatched);
+			assertEquals(es.episodes.count, as.episodes.count);
+			assertEquals(es.episodes.episodes.size(), as.episodes.episodes.size());
+			for(int j = 0; j < es.episodes.episodes.size(); j++)
+			{
+				TvShowEpisode ee = es.episodes.episodes.get(j);
+				TvShowEpisode ae = as.episodes.episodes.get(j);
+				assertEquals(ee.season, ae.season);
+				assertEquals(ee.number, ae.number);
+				assertEquals(ee.title, ae.title);
+				assertEquals(ee.overview, ae.overview);
+				assertEquals(ee.url, ae.url);
+				assertEquals(ee.firstAired, ae.firstAired);
+				assertImagesEquals(ee.images, ae.images);
+				assertRatingsEquals(ee.ratings, ae.ratings);
+				assertEquals(ee.watched, ae.watched);
+			}
+		}
+	}
+
+	private static void assertImagesEquals(Images expected, Images actual)
+	{
+		assertEquals(expected.poster, actual.poster);
+		assertEquals(expected.fanart, actual.fanart);
+		assertEquals(expected.screen, actual.screen);
+	}
+
+	private static void assertRatingsEquals(Ratings expected, Ratings actual)
+	{
+		assertEquals(expected.percentage, actual.percentage);
+		assertEquals(expected.votes, actual.votes);
+		assertEquals(expected.loved, actual.loved);
+		assertEquals(expected.hated, actual.hated);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class EnumCodesTest
+{
+	private enum Day { Monday, Tuesday, Wednesday }
+
+	@Test
+	public void constantsKeepTheirCode()
+	{
+		EnumCodes<Day> codes = new EnumCodes<Day>(Day.class).put(7, Day.Tuesday).put(3, Day.Monday);
+
+		assertEquals(Integer.valueOf(3), codes.encode(Day.Monday));
+		assertEquals(Integer.valueOf(7), codes.encode(Day.Tuesday));
+		assertEquals(Day.Monday, codes.decode(3));
+		assertEquals(Day.Tuesday, codes.decode(7));
+	}
+
+	@Test
+	public void unknownValuesAreNull()
+	{
+		EnumCodes<Day> codes = new EnumCodes<Day>(Day.class).put(1, Day.Monday);
+
+		assertNull(codes.encode(null));
+		assertNull(codes.encode(Day.Wednesday));
+		assertNull(codes.decode(0));
+		assertNull(codes.decode(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aCodeCantBeUsedTwice()
+	{
+		new EnumCodes<Day>(Day.class).put(1, Day.Monday).put(1, Day.Tuesday);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WatchedBitmapTest
+{
+	@Test
+	public void nothingIsWatchedInAnEmptyBitmap()
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(null);
+
+		assertEquals(0, bitmap.count());
+		assertFalse(bitmap.isWatched(0));
+		assertFalse(bitmap.isWatched(42));
+		assertEquals(1, bitmap.nextUnwatched(1, 10));
+		assertEquals(0, bitmap.toBytes().length);
+	}
+
+	@Test
+	public void setAndClearEpisodes()
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(null);
+
+		bitmap.setWatched(1, true);
+		bitmap.setWatched(9, true);
+		bitmap.setWatched(23, true);
+
+		assertTrue(bitmap.isWatched(1));
+		assertTrue(bitmap.isWatched(9));
+		assertTrue(bitmap.isWatched(23));
+		assertFalse(bitmap.isWatched(2));
+		assertEquals(3, bitmap.count());
+		//grown to the byte holding the last episode
+		assertEquals(3, bitmap.toBytes().length);
+
+		bitmap.setWatched(9, false);
+		assertFalse(bitmap.isWatched(9));
+		assertEquals(2, bitmap.count());
+	}
+
+	@Test
+	public void clearingPastTheEndDoesNotGrow()
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(new byte[]{2});
+
+		bitmap.setWatched(100, false);
+		bitmap.setWatched(-1, true);
+
+		assertEquals(1, bitmap.toBytes().length);
+		assertFalse(bitmap.isWatched(-1));
+		assertEquals(1, bitmap.count());
+	}
+
+	@Test
+	public void readsWhatWasStored()
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(null);
+		for(int episode = 1; episode <= 12; episode++)
+			bitmap.setWatched(episode, episode % 3 != 0);
+
+		WatchedBitmap stored = new WatchedBitmap(bitmap.toBytes().clone());
+
+		assertArrayEquals(bitmap.toBytes(), stored.toBytes());
+		for(int episode = 0; episode <= 16; episode++)
+			assertEquals(bitmap.isWatched(episode), stored.isWatched(episode));
+		assertEquals(8, stored.count());
+	}
+
+	@Test
+	public void nextUnwatchedSkipsFullBytes()
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(null);
+		for(int episode = 1; episode <= 20; episode++)
+			bitmap.setWatched(episode, true);
+
+		assertEquals(21, bitmap.nextUnwatched(1, 30));
+		assertEquals(-1, bitmap.nextUnwatched(1, 20));
+		assertEquals(0, bitmap.nextUnwatched(0, 20));
+
+		bitmap.setWatched(17, false);
+		assertEquals(17, bitmap.nextUnwatched(1, 30));
+		assertEquals(21, bitmap.nextUnwatched(18, 30));
+	}
+
+	@Test
+	public void setARange()
+	{
+		WatchedBitmap bitmap = new WatchedBitmap(null);
+		bitmap.setWatched(1, 20, true);
+
+		assertEquals(20, bitmap.count());
+		assertFalse(bitmap.isWatched(0));
+		assertTrue(bitmap.isWatched(20));
+		assertEquals(3, bitmap.toBytes().length);
+		assertEquals(21, bitmap.nextUnwatched(1, 21));
+
+		bitmap.setWatched(5, 9, false);
+		assertEquals(15, bitmap.count());
+		assertEquals(5, bitmap.nextUnwatched(1, 20));
+	}
+}
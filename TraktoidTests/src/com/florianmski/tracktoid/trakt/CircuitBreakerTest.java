@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest
+{
+	@Test
+	public void opensAfterEnoughFailuresInARow()
+	{
+		CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+
+		assertTrue(breaker.allow());
+		breaker.onFailure();
+		assertTrue(breaker.allow());
+		breaker.onFailure();
+
+		assertFalse(breaker.allow());
+	}
+
+	@Test
+	public void aSuccessResetsTheFailures()
+	{
+		CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+
+		assertTrue(breaker.allow());
+	}
+
+	@Test
+	public void letsOneRequestTestTheApiOnceOpenTimeIsOver() throws InterruptedException
+	{
+		CircuitBreaker breaker = open(100);
+		Thread.sleep(150);
+
+		assertTrue(breaker.allow());
+		//only one at a time
+		assertFalse(breaker.allow());
+
+		breaker.onSuccess();
+		assertTrue(breaker.allow());
+		assertTrue(breaker.allow());
+	}
+
+	@Test
+	public void aFailedTestKeepsItOpen() throws InterruptedException
+	{
+		CircuitBreaker breaker = open(100);
+		Thread.sleep(150);
+
+		assertTrue(breaker.allow());
+		breaker.onFailure();
+		assertFalse(breaker.allow());
+
+		Thread.sleep(150);
+		assertTrue(breaker.allow());
+	}
+
+	@Test
+	public void aCancelledTestLetsAnotherOneThrough() throws InterruptedException
+	{
+		CircuitBreaker breaker = open(100);
+		Thread.sleep(150);
+
+		assertTrue(breaker.allow());
+		breaker.onCancel();
+		assertTrue(breaker.allow());
+	}
+
+	private static CircuitBreaker open(long openTime)
+	{
+		CircuitBreaker breaker = new CircuitBreaker(1, openTime);
+		breaker.allow();
+		breaker.onFailure();
+		return breaker;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.jakewharton.apibuilder.ApiException;
+
+public class SingleFlightTest
+{
+	private final ExecutorService callers = Executors.newCachedThreadPool();
+	private final SingleFlight singleFlight = new SingleFlight(new TraktRequests(new TokenBucket(100, 1000, 1000), 1, 10, 10, 100, 1000));
+
+	@After
+	public void stopCallers()
+	{
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void identicalCallsShareOneRequest() throws Exception
+	{
+		BlockingRequest request = new BlockingRequest(Arrays.asList("a", "b"));
+
+		List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+		for(int i = 0; i < 5; i++)
+			results.add(fire("http://api.trakt.tv/show/trending.json/key", request));
+
+		//let every caller join the running request
+		request.started.await();
+		Thread.sleep(100);
+		request.release.countDown();
+
+		Set<List<String>> lists = Collections.newSetFromMap(new IdentityHashMap<List<String>, Boolean>());
+		for(Future<List<String>> result : results)
+		{
+			assertEquals(Arrays.asList("a", "b"), result.get());
+			lists.add(result.get());
+		}
+		//each caller gets its own list
+		assertEquals(5, lists.size());
+		assertEquals(1, request.calls.get());
+	}
+
+	@Test
+	public void differentUrlsAreNotShared() throws Exception
+	{
+		BlockingRequest request = new BlockingRequest(Arrays.asList("a"));
+		request.release.countDown();
+
+		fire("http://api.trakt.tv/show/summary.json/key/1", request).get();
+		fire("http://api.trakt.tv/show/summary.json/key/2", request).get();
+
+		assertEquals(2, request.calls.get());
+	}
+
+	@Test
+	public void theErrorIsSharedToo() throws Exception
+	{
+		final ApiException error = new ApiException("down");
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		TraktRequests.Request<List<String>> request = new TraktRequests.Request<List<String>>()
+		{
+			@Override
+			public List<String> fire()
+			{
+				calls.incrementAndGet();
+				await(release);
+				throw error;
+			}
+		};
+
+		Future<List<String>> first = fire("http://api.trakt.tv/user/library.json/key", request);
+		Future<List<String>> second = fire("http://api.trakt.tv/user/library.json/key", request);
+		Thread.sleep(100);
+		release.countDown();
+
+		assertSame(error, cause(first));
+		assertSame(error, cause(second));
+		assertEquals(1, calls.get());
+	}
+
+	private Future<List<String>> fire(final String url, final TraktRequests.Request<List<String>> request)
+	{
+		return callers.submit(new Callable<List<String>>()
+		{
+			@Override
+			public List<String> call()
+			{
+				return singleFlight.fire(url, request);
+			}
+		});
+	}
+
+	private static Throwable cause(Future<?> future) throws InterruptedException
+	{
+		try
+		{
+			future.get();
+			return null;
+		}
+		catch(ExecutionException e)
+		{
+			return e.getCause();
+		}
+	}
+
+	private static void await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+		}
+		catch(InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static class BlockingRequest implements TraktRequests.Request<List<String>>
+	{
+		private final List<String> result;
+		private final AtomicInteger calls = new AtomicInteger();
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private BlockingRequest(List<String> result)
+		{
+			this.result = result;
+		}
+
+		@Override
+		public List<String> fire()
+		{
+			calls.incrementAndGet();
+			started.countDown();
+			await(release);
+			return result;
+		}
+	}
+}
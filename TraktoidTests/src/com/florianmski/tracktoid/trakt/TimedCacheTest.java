@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TimedCacheTest
+{
+	@Test
+	public void keepsEntriesUntilTheyExpire() throws InterruptedException
+	{
+		TimedCache<String, String> cache = new TimedCache<String, String>(100);
+		cache.put("drama", "a");
+
+		assertEquals("a", cache.get("drama"));
+		assertTrue(cache.contains("drama"));
+		assertNull(cache.get("comedy"));
+
+		Thread.sleep(200);
+
+		assertNull(cache.get("drama"));
+		assertFalse(cache.contains("drama"));
+	}
+
+	@Test
+	public void valuesDropsExpiredEntries() throws InterruptedException
+	{
+		TimedCache<String, String> cache = new TimedCache<String, String>(100);
+		cache.put("drama", "a");
+		Thread.sleep(200);
+		cache.put("comedy", "b");
+
+		assertEquals(1, cache.values().size());
+		assertEquals("b", cache.values().get(0));
+	}
+
+	@Test
+	public void putReplacesAndRestartsTheEntry() throws InterruptedException
+	{
+		TimedCache<String, String> cache = new TimedCache<String, String>(150);
+		cache.put("drama", "a");
+		Thread.sleep(100);
+		cache.put("drama", "b");
+		Thread.sleep(100);
+
+		assertEquals("b", cache.get("drama"));
+
+		cache.remove("drama");
+		assertNull(cache.get("drama"));
+
+		cache.put("drama", "c");
+		cache.clear();
+		assertNull(cache.get("drama"));
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TokenBucketTest
+{
+	@After
+	public void clearInterrupt()
+	{
+		Thread.interrupted();
+	}
+
+	@Test
+	public void sendsABurstThenWaits() throws InterruptedException
+	{
+		TokenBucket bucket = new TokenBucket(3, 10, 1);
+
+		long start = System.nanoTime();
+		for(int i = 0; i < 3; i++)
+			bucket.acquire();
+		assertTrue(elapsed(start) < 50);
+
+		//one token every 100ms
+		bucket.acquire();
+		assertTrue(elapsed(start) >= 80);
+	}
+
+	@Test
+	public void slowDownHalvesTheRate() throws InterruptedException
+	{
+		TokenBucket bucket = new TokenBucket(1, 20, 1);
+		bucket.acquire();
+		bucket.slowDown();
+
+		//10 tokens by second now
+		long start = System.nanoTime();
+		bucket.acquire();
+		assertTrue(elapsed(start) >= 80);
+	}
+
+	@Test
+	public void rateNeverGoesUnderTheMinimum() throws InterruptedException
+	{
+		TokenBucket bucket = new TokenBucket(1, 40, 20);
+		bucket.acquire();
+		for(int i = 0; i < 10; i++)
+			bucket.slowDown();
+
+		//20 tokens by second, not 40 / 1024
+		long start = System.nanoTime();
+		bucket.acquire();
+		assertTrue(elapsed(start) < 200);
+	}
+
+	@Test
+	public void acquireStopsWhenInterrupted()
+	{
+		TokenBucket bucket = new TokenBucket(1, 0.1, 0.1);
+		bucket.acquireUninterruptibly();
+
+		Thread.currentThread().interrupt();
+		long start = System.nanoTime();
+		try
+		{
+			bucket.acquire();
+			fail("acquire() should have been interrupted");
+		}
+		catch(InterruptedException e)
+		{
+			assertTrue(elapsed(start) < 100);
+		}
+	}
+
+	@Test
+	public void acquireUninterruptiblyKeepsTheInterrupt()
+	{
+		TokenBucket bucket = new TokenBucket(1, 10, 10);
+		bucket.acquireUninterruptibly();
+
+		Thread.currentThread().interrupt();
+		long start = System.nanoTime();
+		bucket.acquireUninterruptibly();
+
+		assertTrue(elapsed(start) >= 80);
+		assertTrue(Thread.interrupted());
+	}
+
+	private static long elapsed(long start)
+	{
+		return (System.nanoTime() - start) / 1000000;
+	}
+}
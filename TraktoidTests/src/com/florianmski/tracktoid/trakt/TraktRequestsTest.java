@@ -0,0 +1,323 @@
+/*
+ * Copyright 2011 Florian Mierzejewski
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.florianmski.tracktoid.trakt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jakewharton.apibuilder.ApiException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * TraktRequests against a local server standing in for trakt, which answers
+ * with the status codes and the latency each test asks for.
+ */
+public class TraktRequestsTest
+{
+	private HttpServer server;
+	private final ExecutorService callers = Executors.newCachedThreadPool();
+
+	//status codes of the next answers, 200 once it's empty
+	private final Queue<Integer> statuses = new LinkedList<Integer>();
+	private volatile long latency = 0;
+	private final AtomicInteger hits = new AtomicInteger();
+
+	@Before
+	public void startServer() throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler()
+		{
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				hits.incrementAndGet();
+				try
+				{
+					Thread.sleep(latency);
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+
+				Integer status;
+				synchronized(statuses)
+				{
+					status = statuses.poll();
+				}
+
+				byte[] body = "ok".getBytes("UTF-8");
+				exchange.sendResponseHeaders(status == null ? 200 : status, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	@After
+	public void stopServer()
+	{
+		server.stop(0);
+		callers.shutdownNow();
+		Thread.interrupted();
+	}
+
+	@Test
+	public void readsAreRetriedAfterServerErrors()
+	{
+		answer(503, 502);
+		latency = 50;
+
+		assertEquals("ok", requests(3).get(url("/show/summary.json/key/1"), request("/show/summary.json/key/1")));
+		assertEquals(3, hits.get());
+	}
+
+	@Test
+	public void readsGiveUpAfterTheLastAttempt()
+	{
+		answer(503, 503, 503, 503);
+
+		try
+		{
+			requests(3).get(url("/show/seasons.json/key/1"), request("/show/seasons.json/key/1"));
+			fail("the last error should be thrown");
+		}
+		catch(ApiException e)
+		{
+			assertEquals(3, hits.get());
+		}
+	}
+
+	@Test
+	public void clientErrorsAreNotRetried()
+	{
+		answer(404);
+
+		try
+		{
+			requests(3).get(url("/show/summary.json/key/0"), request("/show/summary.json/key/0"));
+			fail("a 404 should be thrown");
+		}
+		catch(IllegalStateException e)
+		{
+			assertEquals(1, hits.get());
+		}
+	}
+
+	@Test
+	public void postsAreSentOnce()
+	{
+		answer(503);
+
+		try
+		{
+			requests(3).send(url("/show/checkin/key"), request("/show/checkin/key"));
+			fail("the error should be thrown");
+		}
+		catch(ApiException e)
+		{
+			assertEquals(1, hits.get());
+		}
+	}
+
+	@Test
+	public void theBreakerOnlyStopsTheFailingFamily()
+	{
+		answer(500, 500);
+		TraktRequests requests = new TraktRequests(new TokenBucket(100, 1000, 1000), 1, 10, 10, 2, 60 * 1000);
+
+		for(int i = 0; i < 3; i++)
+		{
+			try
+			{
+				requests.get(url("/show/trending.json/key"), request("/show/trending.json/key"));
+				fail("show requests should fail");
+			}
+			catch(ApiException e) {}
+		}
+		//the third one was refused without calling the server
+		assertEquals(2, hits.get());
+
+		assertEquals("ok", requests.get(url("/user/library/shows/all.json/key/me"), request("/user/library/shows/all.json/key/me")));
+		assertEquals(3, hits.get());
+	}
+
+	@Test
+	public void aCancelledPostIsNotSent() throws Exception
+	{
+		//one token, the next one in 10s
+		final TraktRequests requests = new TraktRequests(new TokenBucket(1, 0.1, 0.1), 1, 10, 10, 5, 1000);
+		requests.send(url("/rate/show/key"), request("/rate/show/key"));
+
+		final Thread[] caller = new Thread[1];
+		Future<String> post = callers.submit(new Callable<String>()
+		{
+			@Override
+			public String call()
+			{
+				caller[0] = Thread.currentThread();
+				return requests.send(url("/rate/show/key"), request("/rate/show/key"));
+			}
+		});
+
+		Thread.sleep(100);
+		long start = System.nanoTime();
+		post.cancel(true);
+
+		try
+		{
+			post.get();
+			fail("the post should have been cancelled");
+		}
+		catch(Exception e) {}
+
+		//give it the time to send it if it was going to
+		Thread.sleep(100);
+		assertTrue((System.nanoTime() - start) / 1000000 < 1000);
+		assertEquals(1, hits.get());
+	}
+
+	@Test
+	public void aSharedReadIgnoresTheInterrupt()
+	{
+		//one token, the next one in 200ms
+		TraktRequests requests = new TraktRequests(new TokenBucket(1, 5, 5), 1, 10, 10, 5, 1000);
+		requests.get(url("/show/summary.json/key/1"), request("/show/summary.json/key/1"));
+
+		Thread.currentThread().interrupt();
+		assertEquals("ok", requests.get(url("/show/summary.json/key/1"), request("/show/summary.json/key/1")));
+
+		//kept for the caller
+		assertTrue(Thread.interrupted());
+		assertEquals(2, hits.get());
+	}
+
+	@Test
+	public void slowReadsAreShared() throws Exception
+	{
+		latency = 300;
+		final SingleFlight singleFlight = new SingleFlight(requests(3));
+
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		for(int i = 0; i < 4; i++)
+		{
+			results.add(callers.submit(new Callable<String>()
+			{
+				@Override
+				public String call()
+				{
+					return singleFlight.fire(url("/calendar/shows.json/key"), request("/calendar/shows.json/key"));
+				}
+			}));
+			Thread.sleep(20);
+		}
+
+		for(Future<String> result : results)
+			assertEquals("ok", result.get());
+		assertEquals(1, hits.get());
+	}
+
+	private void answer(Integer... codes)
+	{
+		synchronized(statuses)
+		{
+			statuses.addAll(Arrays.asList(codes));
+		}
+	}
+
+	private TraktRequests requests(int attempts)
+	{
+		return new TraktRequests(new TokenBucket(100, 1000, 1000), attempts, 10, 40, 100, 1000);
+	}
+
+	private String url(String path)
+	{
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	//throws like trakt-java: ApiException when trakt can't answer, something else when it refuses the request
+	private TraktRequests.Request<String> request(final String path)
+	{
+		return new TraktRequests.Request<String>()
+		{
+			@Override
+			public String fire()
+			{
+				HttpURLConnection connection = null;
+				try
+				{
+					connection = (HttpURLConnection) new URL(url(path)).openConnection();
+					connection.setConnectTimeout(1000);
+					connection.setReadTimeout(2000);
+
+					int status = connection.getResponseCode();
+					if(status >= 500)
+						throw new ApiException("HTTP " + status);
+					if(status >= 400)
+						throw new IllegalStateException("HTTP " + status);
+
+					InputStream in = connection.getInputStream();
+					ByteArrayOutputStream body = new ByteArrayOutputStream();
+					byte[] buffer = new byte[256];
+					int read;
+					while((read = in.read(buffer)) != -1)
+						body.write(buffer, 0, read);
+					in.close();
+					return body.toString("UTF-8");
+				}
+				catch(IOException e)
+				{
+					throw new ApiException(e.toString());
+				}
+				finally
+				{
+					if(connection != null)
+						connection.disconnect();
+				}
+			}
+		};
+	}
+}